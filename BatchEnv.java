@@ -0,0 +1,227 @@
+package tom.jiafei;
+
+import java.util.Arrays;
+import java.util.concurrent.Phaser;
+
+import tom.jiafei.SokobanGame.TileType;
+
+// 供训练程序使用的批量环境：N 局游戏的状态放在几个基本类型数组里（按环境分段），一次 step 推进全部 N 局
+// 规则与 GameState.tryMove / isWon 相同；所有关卡四周补墙后放进同一尺寸的网格，四个方向的格子偏移对每局都一样
+// step 只改写 observations / rewards / dones 这几个公开数组，不分配对象；
+// 一局过关或达到步数上限时记 done，并立即重置为该局关卡的初始局面（observations 中已是新局面）
+// threads > 1 时按环境序号分片，调用线程处理第一片，其余由常驻线程并行处理
+final class BatchEnv implements AutoCloseable {
+    // 动作即方向：上、左、下、右，与 SokobanSolver.DX/DY 相同
+    static final int ACTIONS = 4;
+
+    static final float STEP_REWARD = -0.1f;
+    static final float BOX_ON_TARGET_REWARD = 1f;
+    static final float BOX_OFF_TARGET_REWARD = -1f;
+    static final float SOLVED_REWARD = 10f;
+
+    private static final byte FLOOR = (byte) TileType.FLOOR.id;
+    private static final byte WALL = (byte) TileType.WALL.id;
+    private static final byte PLAYER = (byte) TileType.PLAYER.id;
+    private static final byte BOX = (byte) TileType.BOX.id;
+    private static final byte TARGET = (byte) TileType.TARGET.id;
+    private static final byte BOX_ON_TARGET = (byte) TileType.BOX_ON_TARGET.id;
+    private static final byte PLAYER_ON_TARGET = (byte) TileType.PLAYER_ON_TARGET.id;
+
+    final int count;
+    final int width;
+    final int height;
+    // 每局占 width * height 字节，取值与地图中的图块编号相同
+    final byte[] observations;
+    final float[] rewards;
+    final boolean[] dones;
+
+    private final int maxSteps;
+    private final int[] offsets;
+    private final byte[][] starts;
+    private final int[] startPlayer;
+    private final int[] startBoxesLeft;
+
+    private final int[] level;
+    private final int[] player;
+    private final int[] boxesLeft;
+    private final int[] steps;
+
+    // 分片并行
+    private final int shards;
+    private final Phaser phaser;
+    private final Thread[] workers;
+    private int[] pendingActions;
+    private volatile boolean closed;
+
+    BatchEnv(int[][][] levels, int count, int maxSteps, int threads) {
+        int w = 0;
+        int h = 0;
+        for (int[][] map : levels) {
+            h = Math.max(h, map.length);
+            for (int[] row : map) {
+                w = Math.max(w, row.length);
+            }
+        }
+        this.count = count;
+        this.maxSteps = maxSteps;
+        width = w + 2;
+        height = h + 2;
+        int stride = width * height;
+        offsets = new int[ACTIONS];
+        for (int d = 0; d < ACTIONS; d++) {
+            offsets[d] = SokobanSolver.DY[d] * width + SokobanSolver.DX[d];
+        }
+
+        starts = new byte[levels.length][stride];
+        startPlayer = new int[levels.length];
+        startBoxesLeft = new int[levels.length];
+        for (int l = 0; l < levels.length; l++) {
+            Arrays.fill(starts[l], WALL);
+            for (int y = 0; y < levels[l].length; y++) {
+                for (int x = 0; x < levels[l][y].length; x++) {
+                    int cell = (y + 1) * width + x + 1;
+                    int id = levels[l][y][x];
+                    starts[l][cell] = (byte) id;
+                    if (id == PLAYER || id == PLAYER_ON_TARGET) startPlayer[l] = cell;
+                    if (id == BOX) startBoxesLeft[l]++;
+                }
+            }
+        }
+
+        observations = new byte[count * stride];
+        rewards = new float[count];
+        dones = new boolean[count];
+        level = new int[count];
+        player = new int[count];
+        boxesLeft = new int[count];
+        steps = new int[count];
+        for (int e = 0; e < count; e++) {
+            reset(e, e % levels.length);
+        }
+
+        shards = Math.max(1, Math.min(threads, count));
+        workers = new Thread[shards - 1];
+        phaser = shards > 1 ? new Phaser(shards) : null;
+        for (int s = 1; s < shards; s++) {
+            int shard = s;
+            workers[s - 1] = new Thread(() -> workLoop(shard), "sokoban-env-" + s);
+            workers[s - 1].setDaemon(true);
+            workers[s - 1].start();
+        }
+    }
+
+    int stride() {
+        return width * height;
+    }
+
+    int level(int env) {
+        return level[env];
+    }
+
+    int steps(int env) {
+        return steps[env];
+    }
+
+    // 把第 env 局换成 newLevel 关的初始局面
+    void reset(int env, int newLevel) {
+        int stride = width * height;
+        level[env] = newLevel;
+        System.arraycopy(starts[newLevel], 0, observations, env * stride, stride);
+        player[env] = startPlayer[newLevel];
+        boxesLeft[env] = startBoxesLeft[newLevel];
+        steps[env] = 0;
+    }
+
+    // actions[e] 为第 e 局的方向（0~3）；其他值视为原地不动，同样计一步
+    void step(int[] actions) {
+        if (shards == 1) {
+            stepRange(actions, 0, count);
+            return;
+        }
+        pendingActions = actions;
+        // 第一次到达：放行各分片；第二次到达：等所有分片做完
+        phaser.arriveAndAwaitAdvance();
+        stepRange(actions, 0, shardEnd(0));
+        phaser.arriveAndAwaitAdvance();
+    }
+
+    private int shardEnd(int shard) {
+        return (int) ((long) count * (shard + 1) / shards);
+    }
+
+    private void workLoop(int shard) {
+        int from = shardEnd(shard - 1);
+        int to = shardEnd(shard);
+        while (true) {
+            phaser.arriveAndAwaitAdvance();
+            if (closed) return;
+            stepRange(pendingActions, from, to);
+            phaser.arriveAndAwaitAdvance();
+        }
+    }
+
+    private void stepRange(int[] actions, int from, int to) {
+        int stride = width * height;
+        byte[] board = observations;
+        for (int e = from; e < to; e++) {
+            int base = e * stride;
+            int a = actions[e];
+            float reward = STEP_REWARD;
+            if (a >= 0 && a < ACTIONS) {
+                int off = offsets[a];
+                int p = base + player[e];
+                int q = p + off;
+                byte t = board[q];
+                boolean free = t != WALL;
+                if (t == BOX || t == BOX_ON_TARGET) {
+                    int r = q + off;
+                    byte u = board[r];
+                    if (u == WALL || u == BOX || u == BOX_ON_TARGET) {
+                        free = false;
+                    } else {
+                        if (u == TARGET) {
+                            board[r] = BOX_ON_TARGET;
+                            boxesLeft[e]--;
+                            reward += BOX_ON_TARGET_REWARD;
+                        } else {
+                            board[r] = BOX;
+                        }
+                        if (t == BOX_ON_TARGET) {
+                            board[q] = TARGET;
+                            boxesLeft[e]++;
+                            reward += BOX_OFF_TARGET_REWARD;
+                        } else {
+                            board[q] = FLOOR;
+                        }
+                    }
+                }
+                if (free) {
+                    board[p] = board[p] == PLAYER_ON_TARGET ? TARGET : FLOOR;
+                    board[q] = board[q] == TARGET ? PLAYER_ON_TARGET : PLAYER;
+                    player[e] = q - base;
+                }
+            }
+            boolean solved = boxesLeft[e] == 0;
+            if (solved) reward += SOLVED_REWARD;
+            rewards[e] = reward;
+            boolean done = solved || ++steps[e] >= maxSteps;
+            dones[e] = done;
+            if (done) reset(e, level[e]);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (phaser == null || closed) return;
+        closed = true;
+        phaser.arriveAndDeregister();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
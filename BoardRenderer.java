@@ -0,0 +1,231 @@
+package tom.jiafei;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+import tom.jiafei.SokobanGame.TileType;
+
+import static tom.jiafei.SokobanGame.TILE_SIZE;
+
+// 图块资源与地图绘制，可绘制到任意 Graphics（窗口或离屏图像）
+// 图块在后台线程生成或从 sprites.cache 读取，就绪前先用纯色块占位，窗口不必等待
+final class BoardRenderer {
+    private static final Font HELP_FONT = new Font("微软雅黑", Font.PLAIN, 14);
+    private static final Font ICON_FONT = new Font("Arial", Font.BOLD, 24);
+    private static final Color TARGET_MARK = new Color(255, 255, 255, 100);
+    private static final File CACHE_FILE = new File("sprites.cache");
+
+    private static CompletableFuture<Image[]> sprites;
+
+    // 资源缓存，按 TileType.ordinal() 索引；加载完成前为 null
+    private Image[] tileImages;
+
+    // 离屏绘制（基准测试等）使用：等待图块就绪
+    BoardRenderer() {
+        tileImages = warmUp().join();
+    }
+
+    // 窗口使用：图块就绪后在 EDT 上回调 onReady
+    BoardRenderer(Runnable onReady) {
+        warmUp().thenAccept(images -> SwingUtilities.invokeLater(() -> {
+            tileImages = images;
+            onReady.run();
+        }));
+    }
+
+    // 在后台开始准备图块与字体，可在登录界面显示时提前调用
+    static synchronized CompletableFuture<Image[]> warmUp() {
+        if (sprites == null) {
+            sprites = CompletableFuture.supplyAsync(BoardRenderer::loadResources, r -> {
+                Thread t = new Thread(r, "sokoban-warmup");
+                t.setDaemon(true);
+                t.start();
+            });
+        }
+        return sprites;
+    }
+
+    private static Image[] loadResources() {
+        long start = System.nanoTime();
+        TileType[] types = TileType.values();
+        SpriteCache cache = new SpriteCache(CACHE_FILE, fingerprint());
+        Image[] images = cache.load(types.length, TILE_SIZE);
+        if (images != null) {
+            StartupTimer.record("sprites(cache)", start);
+        } else {
+            BufferedImage[] created = new BufferedImage[types.length];
+            for (TileType type : types) {
+                String icon = iconOf(type);
+                created[type.ordinal()] = icon == null
+                        ? createTileImage(type.color, type.description)
+                        : createTileImageWithIcon(type.color, icon, type.description);
+            }
+            StartupTimer.record("sprites(rasterized)", start);
+            cache.save(created, TILE_SIZE);
+            images = created;
+        }
+
+        // 提前完成帮助文字字体的初始化，首帧绘制时不再卡在字体加载上
+        long fontStart = System.nanoTime();
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scratch.createGraphics();
+        g.getFontMetrics(HELP_FONT).stringWidth("使用方向键");
+        g.dispose();
+        StartupTimer.record("fonts", fontStart);
+        return images;
+    }
+
+    // 带图标的图块及其图标文字
+    private static String iconOf(TileType type) {
+        switch (type) {
+            case PLAYER:
+            case PLAYER_ON_TARGET:
+                return "P";
+            case BOX:
+            case BOX_ON_TARGET:
+                return "B";
+            case TARGET:
+                return "○";
+            default:
+                return null;
+        }
+    }
+
+    private static int fingerprint() {
+        int hash = TILE_SIZE;
+        for (TileType type : TileType.values()) {
+            hash = 31 * hash + type.color.getRGB();
+            hash = 31 * hash + String.valueOf(iconOf(type)).hashCode();
+        }
+        return hash;
+    }
+
+    private static BufferedImage createTileImage(Color bgColor, String text) {
+        BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+
+        // 背景
+        g.setColor(bgColor);
+        g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+
+        // 边框
+        g.setColor(Color.BLACK);
+        g.drawRect(0, 0, TILE_SIZE-1, TILE_SIZE-1);
+
+        g.dispose();
+        return img;
+    }
+
+    private static BufferedImage createTileImageWithIcon(Color bgColor, String icon, String text) {
+        BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+
+        // 背景
+        g.setColor(bgColor);
+        g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+
+        // 边框
+        g.setColor(Color.BLACK);
+        g.drawRect(0, 0, TILE_SIZE-1, TILE_SIZE-1);
+
+        // 图标
+        g.setColor(Color.BLACK);
+        g.setFont(ICON_FONT);
+        FontMetrics fm = g.getFontMetrics();
+        int x = (TILE_SIZE - fm.stringWidth(icon)) / 2;
+        int y = (TILE_SIZE - fm.getHeight()) / 2 + fm.getAscent();
+        g.drawString(icon, x, y);
+
+        g.dispose();
+        return img;
+    }
+
+    // 地图在 width x height 区域内居中时左上角的位置
+    static Point origin(int[][] map, int width, int height) {
+        int mapWidth = map[0].length * TILE_SIZE;
+        int mapHeight = map.length * TILE_SIZE;
+        return new Point((width - mapWidth) / 2, (height - mapHeight) / 2);
+    }
+
+    // 关卡的静态背景层：墙、地板和目标点（箱子和玩家所在格画成底下的地板或目标点）
+    static BufferedImage renderBackground(int[][] map) {
+        Image[] images = warmUp().join();
+        int width = 0;
+        for (int[] row : map) {
+            width = Math.max(width, row.length);
+        }
+        BufferedImage background = new BufferedImage(Math.max(1, width * TILE_SIZE), Math.max(1, map.length * TILE_SIZE),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = background.createGraphics();
+        for (int y = 0; y < map.length; y++) {
+            for (int x = 0; x < map[y].length; x++) {
+                int id = map[y][x];
+                TileType tile = id == TileType.WALL.id ? TileType.WALL
+                        : SokobanSolver.isTargetId(id) ? TileType.TARGET : TileType.FLOOR;
+                int px = x * TILE_SIZE;
+                int py = y * TILE_SIZE;
+                g.drawImage(images[tile.ordinal()], px, py, null);
+                if (tile == TileType.TARGET) {
+                    g.setColor(TARGET_MARK);
+                    g.fillOval(px + 10, py + 10, TILE_SIZE - 20, TILE_SIZE - 20);
+                }
+            }
+        }
+        g.dispose();
+        return background;
+    }
+
+    private static boolean isStatic(TileType tile) {
+        return tile == TileType.FLOOR || tile == TileType.WALL || tile == TileType.TARGET;
+    }
+
+    void render(Graphics g, int[][] map, int width, int height) {
+        render(g, map, null, width, height);
+    }
+
+    // background 为该关的静态背景层时，只在其上补画箱子和玩家
+    void render(Graphics g, int[][] map, Image background, int width, int height) {
+        Point origin = origin(map, width, height);
+        int startX = origin.x;
+        int startY = origin.y;
+
+        // 绘制地图
+        Image[] images = tileImages;
+        boolean layered = background != null && images != null;
+        if (layered) {
+            g.drawImage(background, startX, startY, null);
+        }
+        for (int y = 0; y < map.length; y++) {
+            for (int x = 0; x < map[y].length; x++) {
+                TileType tile = TileType.fromId(map[y][x]);
+                if (layered && isStatic(tile)) continue;
+                int px = startX + x * TILE_SIZE;
+                int py = startY + y * TILE_SIZE;
+                if (images != null) {
+                    g.drawImage(images[tile.ordinal()], px, py, null);
+                } else {
+                    g.setColor(tile.color);
+                    g.fillRect(px, py, TILE_SIZE, TILE_SIZE);
+                    g.setColor(Color.BLACK);
+                    g.drawRect(px, py, TILE_SIZE - 1, TILE_SIZE - 1);
+                }
+
+                // 在目标点上添加特殊标记
+                if (tile == TileType.TARGET || tile == TileType.BOX_ON_TARGET || tile == TileType.PLAYER_ON_TARGET) {
+                    g.setColor(TARGET_MARK);
+                    g.fillOval(px + 10, py + 10, TILE_SIZE - 20, TILE_SIZE - 20);
+                }
+            }
+        }
+
+        // 绘制帮助文本
+        g.setColor(Color.BLACK);
+        g.setFont(HELP_FONT);
+        String helpText = "使用方向键或WASD移动，R重玩当前关卡，H提示";
+        int textWidth = g.getFontMetrics().stringWidth(helpText);
+        g.drawString(helpText, (width - textWidth) / 2, 30);
+    }
+}
@@ -0,0 +1,12 @@
+package tom.jiafei;
+
+import java.util.function.BooleanSupplier;
+
+// 锦标赛中的机器人：拿到关卡的初始地图，返回 LURD 记谱的走法
+// stop 变为 true（超时、超出内存预算或被中断）时应尽快返回，可以返回已有的部分走法或 null
+// 插件机器人实现本接口并提供无参构造器，按类名加载；每局新建一个实例
+interface BotAgent {
+    String name();
+
+    String play(int[][] level, BooleanSupplier stop);
+}
@@ -0,0 +1,134 @@
+package tom.jiafei;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 压缩后的记录段：按列存储，用户名进字典，数值列用变长整数，时间戳存差值
+// 文件头后紧跟用户字典，查询某个用户时读完字典即可判断能否整段跳过
+final class ColumnSegment {
+    private static final int MAGIC = 0x534B5243; // "SKRC"
+    private static final int VERSION = 1;
+
+    final String[] users;
+    final int[] userIndex;
+    final int[] levels;
+    final int[] moves;
+    final long[] timestamps;
+
+    private ColumnSegment(String[] users, int[] userIndex, int[] levels, int[] moves, long[] timestamps) {
+        this.users = users;
+        this.userIndex = userIndex;
+        this.levels = levels;
+        this.moves = moves;
+        this.timestamps = timestamps;
+    }
+
+    int size() {
+        return levels.length;
+    }
+
+    // 用户在字典中的序号，不存在时返回 -1
+    int indexOf(String user) {
+        for (int i = 0; i < users.length; i++) {
+            if (users[i].equals(user)) return i;
+        }
+        return -1;
+    }
+
+    GameRecord get(int i) {
+        return new GameRecord(users[userIndex[i]], levels[i], moves[i], timestamps[i]);
+    }
+
+    static void write(File file, List<GameRecord> records) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        String[] names = new String[records.size()];
+        for (GameRecord r : records) {
+            if (!dictionary.containsKey(r.user)) {
+                names[dictionary.size()] = r.user;
+                dictionary.put(r.user, dictionary.size());
+            }
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(records.size());
+            out.writeInt(dictionary.size());
+            for (int i = 0; i < dictionary.size(); i++) {
+                out.writeUTF(names[i]);
+            }
+            for (GameRecord r : records) writeVarLong(out, dictionary.get(r.user));
+            for (GameRecord r : records) writeVarLong(out, r.level);
+            for (GameRecord r : records) writeVarLong(out, r.moves);
+            long previous = 0;
+            for (GameRecord r : records) {
+                long delta = r.timestamp - previous;
+                writeVarLong(out, (delta << 1) ^ (delta >> 63));
+                previous = r.timestamp;
+            }
+            // 清单随后会指向这个文件、原文本段会被删掉，必须先落盘再原子替换
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static ColumnSegment read(File file) throws IOException {
+        return read(file, null);
+    }
+
+    // onlyUser 不为 null 且不在字典中时直接返回 null，不解码各列
+    static ColumnSegment read(File file, String onlyUser) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("记录段格式错误: " + file);
+            }
+            int count = in.readInt();
+            String[] users = new String[in.readInt()];
+            boolean found = onlyUser == null;
+            for (int i = 0; i < users.length; i++) {
+                users[i] = in.readUTF();
+                found |= users[i].equals(onlyUser);
+            }
+            if (!found) return null;
+
+            int[] userIndex = new int[count];
+            int[] levels = new int[count];
+            int[] moves = new int[count];
+            long[] timestamps = new long[count];
+            for (int i = 0; i < count; i++) userIndex[i] = (int) readVarLong(in);
+            for (int i = 0; i < count; i++) levels[i] = (int) readVarLong(in);
+            for (int i = 0; i < count; i++) moves[i] = (int) readVarLong(in);
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                long zigzag = readVarLong(in);
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                timestamps[i] = previous;
+            }
+            return new ColumnSegment(users, userIndex, levels, moves, timestamps);
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+}
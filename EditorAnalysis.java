@@ -0,0 +1,267 @@
+package tom.jiafei;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import tom.jiafei.SokobanGame.TileType;
+
+// 关卡编辑器的增量分析：每改一格只更新受影响的部分
+// 计数（玩家、箱子、目标点）直接加减；“从边缘可达”和“非死格”两个区域在变大时只从改动处向外扩展，
+// 变小时（加墙、删目标点）才重算对应的那一个区域，其余分析不动
+// 非死格：从目标点出发按“拉箱子”反向搜索能到达的格子，箱子从 c-d 拉到 c 需要 c-d 和 c-2d 都不是墙
+// 死格数随每次变化加减；set 返回这次图块或死格状态变了的格子的外接矩形，编辑器只重绘这一块
+final class EditorAnalysis {
+    final int width;
+    final int height;
+    private final int[] tiles;
+    private int players;
+    // 所有玩家格序号之和，只有一个玩家时就是玩家所在格
+    private long playerCells;
+    private int boxes;
+    private int targets;
+    // 从地图边缘不穿墙能走到的格子
+    private final boolean[] outside;
+    private final boolean[] live;
+    private final int[] queue;
+    // 非墙且不是非死格的格子数
+    private int dead;
+    // 重算非死格前的状态，用来找出变了的格子
+    private final boolean[] previousLive;
+    // 本次 set 中需要重绘的格子范围（含两端）
+    private int dirtyX0;
+    private int dirtyY0;
+    private int dirtyX1;
+    private int dirtyY1;
+
+    EditorAnalysis(int[][] map) {
+        height = map.length;
+        int w = 0;
+        for (int[] row : map) {
+            w = Math.max(w, row.length);
+        }
+        width = w;
+        tiles = new int[width * height];
+        outside = new boolean[tiles.length];
+        live = new boolean[tiles.length];
+        previousLive = new boolean[tiles.length];
+        queue = new int[tiles.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int id = x < map[y].length ? map[y][x] : TileType.WALL.id;
+                tiles[y * width + x] = id;
+                count(y * width + x, id, 1);
+            }
+        }
+        recomputeOutside();
+        recomputeLive();
+    }
+
+    int get(int x, int y) {
+        return tiles[y * width + x];
+    }
+
+    // 非墙且箱子推不到任何目标点
+    boolean isDead(int x, int y) {
+        int cell = y * width + x;
+        return !wall(cell) && !live[cell];
+    }
+
+    int deadCount() {
+        return dead;
+    }
+
+    // 返回图块或死格状态变了的格子范围（以格为单位）；没有变化时返回 null
+    Rectangle set(int x, int y, int id) {
+        int cell = y * width + x;
+        int old = tiles[cell];
+        if (old == id) return null;
+        dirtyX0 = dirtyX1 = x;
+        dirtyY0 = dirtyY1 = y;
+        boolean wasDead = !wall(cell) && !live[cell];
+        count(cell, old, -1);
+        tiles[cell] = id;
+        count(cell, id, 1);
+        if (wasDead != (!wall(cell) && !live[cell])) dead += wasDead ? -1 : 1;
+
+        boolean wasWall = old == TileType.WALL.id;
+        boolean isWall = id == TileType.WALL.id;
+        boolean wasTarget = SokobanSolver.isTargetId(old);
+        boolean isTarget = SokobanSolver.isTargetId(id);
+
+        if (wasWall && !isWall) {
+            if (onBorder(cell) || touchesOutside(cell)) {
+                outside[cell] = true;
+                flood(cell);
+            }
+            // 新的拉动只可能以 c+d 或 c+2d 处的非死格为起点
+            int tail = 0;
+            for (int d = 0; d < 4; d++) {
+                for (int k = 1; k <= 2; k++) {
+                    int from = offset(cell, d, k);
+                    if (from >= 0 && live[from]) queue[tail++] = from;
+                }
+            }
+            if (isTarget && !live[cell]) {
+                markLive(cell);
+                queue[tail++] = cell;
+            }
+            pull(tail, true);
+        } else if (!wasWall && isWall) {
+            if (outside[cell]) recomputeOutside();
+            if (live[cell] || liveNearby(cell)) recomputeLive();
+        } else if (!isWall) {
+            if (isTarget && !wasTarget && !live[cell]) {
+                markLive(cell);
+                queue[0] = cell;
+                pull(1, true);
+            } else if (wasTarget && !isTarget) {
+                recomputeLive();
+            }
+        }
+        return new Rectangle(dirtyX0, dirtyY0, dirtyX1 - dirtyX0 + 1, dirtyY1 - dirtyY0 + 1);
+    }
+
+    // 非墙格 cell 变为非死格
+    private void markLive(int cell) {
+        live[cell] = true;
+        dead--;
+        touch(cell);
+    }
+
+    private void touch(int cell) {
+        int x = cell % width;
+        int y = cell / width;
+        dirtyX0 = Math.min(dirtyX0, x);
+        dirtyY0 = Math.min(dirtyY0, y);
+        dirtyX1 = Math.max(dirtyX1, x);
+        dirtyY1 = Math.max(dirtyY1, y);
+    }
+
+    List<String> problems() {
+        List<String> problems = new ArrayList<>();
+        if (players != 1) problems.add("玩家数为 " + players + "，应恰好为 1");
+        if (boxes == 0) problems.add("没有箱子");
+        if (boxes != targets) problems.add("箱子 " + boxes + " 个，目标点 " + targets + " 个");
+        if (players == 1 && outside[(int) playerCells]) problems.add("四周没有封闭");
+        return problems;
+    }
+
+    int[][] toMap() {
+        int[][] map = new int[height][width];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(tiles, y * width, map[y], 0, width);
+        }
+        return map;
+    }
+
+    private void count(int cell, int id, int delta) {
+        if (id == TileType.PLAYER.id || id == TileType.PLAYER_ON_TARGET.id) {
+            players += delta;
+            playerCells += (long) delta * cell;
+        }
+        if (SokobanSolver.isBoxId(id)) boxes += delta;
+        if (SokobanSolver.isTargetId(id)) targets += delta;
+    }
+
+    private boolean wall(int cell) {
+        return tiles[cell] == TileType.WALL.id;
+    }
+
+    private boolean onBorder(int cell) {
+        int x = cell % width;
+        int y = cell / width;
+        return x == 0 || y == 0 || x == width - 1 || y == height - 1;
+    }
+
+    // 沿方向 d 走 k 格后的格子，出界时返回 -1
+    private int offset(int cell, int d, int k) {
+        int x = cell % width + SokobanSolver.DX[d] * k;
+        int y = cell / width + SokobanSolver.DY[d] * k;
+        return x < 0 || y < 0 || x >= width || y >= height ? -1 : y * width + x;
+    }
+
+    private boolean touchesOutside(int cell) {
+        for (int d = 0; d < 4; d++) {
+            int next = offset(cell, d, 1);
+            if (next >= 0 && outside[next]) return true;
+        }
+        return false;
+    }
+
+    private boolean liveNearby(int cell) {
+        for (int d = 0; d < 4; d++) {
+            for (int k = 1; k <= 2; k++) {
+                int near = offset(cell, d, k);
+                if (near >= 0 && live[near]) return true;
+            }
+        }
+        return false;
+    }
+
+    private void recomputeOutside() {
+        Arrays.fill(outside, false);
+        for (int cell = 0; cell < tiles.length; cell++) {
+            if (onBorder(cell) && !wall(cell) && !outside[cell]) {
+                outside[cell] = true;
+                flood(cell);
+            }
+        }
+    }
+
+    // 从 start（已标记）出发扩展 outside
+    private void flood(int start) {
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int d = 0; d < 4; d++) {
+                int next = offset(cell, d, 1);
+                if (next < 0 || outside[next] || wall(next)) continue;
+                outside[next] = true;
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    // 整体重算后与原来逐格比较，只把状态变了的格子计入重绘范围
+    private void recomputeLive() {
+        System.arraycopy(live, 0, previousLive, 0, live.length);
+        Arrays.fill(live, false);
+        int tail = 0;
+        for (int cell = 0; cell < tiles.length; cell++) {
+            if (!wall(cell) && SokobanSolver.isTargetId(tiles[cell])) {
+                live[cell] = true;
+                queue[tail++] = cell;
+            }
+        }
+        pull(tail, false);
+        dead = 0;
+        for (int cell = 0; cell < tiles.length; cell++) {
+            if (wall(cell)) continue;
+            if (!live[cell]) dead++;
+            if (live[cell] != previousLive[cell]) touch(cell);
+        }
+    }
+
+    // queue[0, tail) 中是已标记的非死格，按拉箱子的方向继续扩展；incremental 时同时更新死格数和重绘范围
+    private void pull(int tail, boolean incremental) {
+        int head = 0;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int d = 0; d < 4; d++) {
+                int from = offset(cell, d, 1);
+                int player = offset(cell, d, 2);
+                if (from < 0 || player < 0 || live[from] || wall(from) || wall(player)) continue;
+                if (incremental) {
+                    markLive(from);
+                } else {
+                    live[from] = true;
+                }
+                queue[tail++] = from;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package tom.jiafei;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// 自定义 JFR 事件，默认关闭；用 jfr/sokoban.jfc 开启：
+// java -XX:StartFlightRecording:settings=default,settings=jfr/sokoban.jfc,filename=game.jfr ...
+final class GameEvents {
+    private GameEvents() {
+    }
+
+    @Name("tom.jiafei.LevelLoad")
+    @Label("Level Load")
+    @Category({"Sokoban", "Game"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class LevelLoad extends Event {
+        @Label("Level")
+        int level;
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+    }
+
+    @Name("tom.jiafei.Move")
+    @Label("Move")
+    @Category({"Sokoban", "Game"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Move extends Event {
+        @Label("Direction")
+        String direction;
+
+        @Label("Pushed Box")
+        boolean pushed;
+
+        @Label("Blocked")
+        boolean blocked;
+    }
+
+    @Name("tom.jiafei.Paint")
+    @Label("Paint")
+    @Category({"Sokoban", "Rendering"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Paint extends Event {
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Cells")
+        int cells;
+    }
+
+    @Name("tom.jiafei.FileOperation")
+    @Label("File Operation")
+    @Category({"Sokoban", "Persistence"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class FileOperation extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    static void fileOperation(FileOperation event, String file, String operation, long bytes) {
+        if (event.shouldCommit()) {
+            event.file = file;
+            event.operation = operation;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
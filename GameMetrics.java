@@ -0,0 +1,137 @@
+package tom.jiafei;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// 运行指标：通过 JMX 导出（tom.jiafei:type=GameMetrics 及 tom.jiafei:type=Latency,name=*）
+// 设置 -Dsokoban.metrics.logSeconds=N 时每 N 秒额外打印一行汇总
+final class GameMetrics implements GameMetricsMBean {
+    private static final GameMetrics INSTANCE = new GameMetrics();
+
+    final LongAdder moves = new LongAdder();
+    final LatencyHistogram render = new LatencyHistogram();
+    final LatencyHistogram loadLevel = new LatencyHistogram();
+    final LatencyHistogram login = new LatencyHistogram();
+    final LatencyHistogram recordsRead = new LatencyHistogram();
+    final LatencyHistogram recordsWrite = new LatencyHistogram();
+    final LatencyHistogram usersRead = new LatencyHistogram();
+    final LatencyHistogram usersWrite = new LatencyHistogram();
+
+    final LongAdder recordsBytesRead = new LongAdder();
+    final LongAdder recordsBytesWritten = new LongAdder();
+    final LongAdder usersBytesRead = new LongAdder();
+    final LongAdder usersBytesWritten = new LongAdder();
+    volatile long recordsFileSize;
+    volatile long usersFileSize;
+
+    private volatile double movesPerSecond;
+    private long lastMoves;
+
+    private GameMetrics() {
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sokoban-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        // MBean 注册要加载 JMX 相关类，放到后台以免拖慢启动
+        sampler.execute(this::register);
+        sampler.scheduleAtFixedRate(this::sample, 1, 1, TimeUnit.SECONDS);
+
+        long logSeconds = Long.getLong("sokoban.metrics.logSeconds", 0);
+        if (logSeconds > 0) {
+            sampler.scheduleAtFixedRate(() -> System.out.println(summary()),
+                    logSeconds, logSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    static GameMetrics get() {
+        return INSTANCE;
+    }
+
+    private void register() {
+        Map<String, Object> beans = new LinkedHashMap<>();
+        beans.put("tom.jiafei:type=GameMetrics", this);
+        beans.put("tom.jiafei:type=Latency,name=render", render);
+        beans.put("tom.jiafei:type=Latency,name=loadLevel", loadLevel);
+        beans.put("tom.jiafei:type=Latency,name=login", login);
+        beans.put("tom.jiafei:type=Latency,name=recordsRead", recordsRead);
+        beans.put("tom.jiafei:type=Latency,name=recordsWrite", recordsWrite);
+        beans.put("tom.jiafei:type=Latency,name=usersRead", usersRead);
+        beans.put("tom.jiafei:type=Latency,name=usersWrite", usersWrite);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Map.Entry<String, Object> bean : beans.entrySet()) {
+            try {
+                ObjectName name = new ObjectName(bean.getKey());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(bean.getValue(), name);
+                }
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void sample() {
+        long total = moves.sum();
+        movesPerSecond = total - lastMoves;
+        lastMoves = total;
+    }
+
+    String summary() {
+        return String.format("[metrics] moves=%d (%.0f/s) render p50/p99=%.0f/%.0fus loadLevel p99=%.0fus"
+                        + " login p99=%.0fus records r/w p99=%.0f/%.0fus size=%d users r/w p99=%.0f/%.0fus size=%d",
+                moves.sum(), movesPerSecond, render.getP50Micros(), render.getP99Micros(),
+                loadLevel.getP99Micros(), login.getP99Micros(),
+                recordsRead.getP99Micros(), recordsWrite.getP99Micros(), recordsFileSize,
+                usersRead.getP99Micros(), usersWrite.getP99Micros(), usersFileSize);
+    }
+
+    @Override
+    public long getMovesApplied() {
+        return moves.sum();
+    }
+
+    @Override
+    public double getMovesPerSecond() {
+        return movesPerSecond;
+    }
+
+    @Override
+    public long getRecordsBytesRead() {
+        return recordsBytesRead.sum();
+    }
+
+    @Override
+    public long getRecordsBytesWritten() {
+        return recordsBytesWritten.sum();
+    }
+
+    @Override
+    public long getRecordsFileSize() {
+        return recordsFileSize;
+    }
+
+    @Override
+    public long getUsersBytesRead() {
+        return usersBytesRead.sum();
+    }
+
+    @Override
+    public long getUsersBytesWritten() {
+        return usersBytesWritten.sum();
+    }
+
+    @Override
+    public long getUsersFileSize() {
+        return usersFileSize;
+    }
+}
@@ -0,0 +1,19 @@
+package tom.jiafei;
+
+public interface GameMetricsMBean {
+    long getMovesApplied();
+
+    double getMovesPerSecond();
+
+    long getRecordsBytesRead();
+
+    long getRecordsBytesWritten();
+
+    long getRecordsFileSize();
+
+    long getUsersBytesRead();
+
+    long getUsersBytesWritten();
+
+    long getUsersFileSize();
+}
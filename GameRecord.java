@@ -0,0 +1,36 @@
+package tom.jiafei;
+
+// 一条通关记录，文本形式为 user|level|moves|timestamp
+final class GameRecord {
+    final String user;
+    final int level;
+    final int moves;
+    final long timestamp;
+
+    GameRecord(String user, int level, int moves, long timestamp) {
+        this.user = user;
+        this.level = level;
+        this.moves = moves;
+        this.timestamp = timestamp;
+    }
+
+    // 格式不对时返回 null
+    static GameRecord parse(String line) {
+        int a = line.indexOf('|');
+        int b = a < 0 ? -1 : line.indexOf('|', a + 1);
+        int c = b < 0 ? -1 : line.indexOf('|', b + 1);
+        if (a <= 0 || c < 0) return null;
+        try {
+            return new GameRecord(line.substring(0, a),
+                    Integer.parseInt(line.substring(a + 1, b)),
+                    Integer.parseInt(line.substring(b + 1, c)),
+                    Long.parseLong(line.substring(c + 1).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    String toLine() {
+        return user + "|" + level + "|" + moves + "|" + timestamp;
+    }
+}
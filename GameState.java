@@ -0,0 +1,254 @@
+package tom.jiafei;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import tom.jiafei.SokobanGame.TileType;
+
+// 当前关卡的地图、玩家位置与移动规则，不依赖任何界面组件
+// hash 是箱子和玩家位置的 Zobrist 哈希，每步只异或进出的几个格子；走过的每一步压入 history 以便撤销
+// 每次载入、移动、撤销后把这次发生的变化合成一个掩码交给 listener
+final class GameState {
+    // tryMove 的返回值
+    static final int BLOCKED = 0;
+    static final int MOVED = 1;
+    static final int PUSHED = 2;
+
+    // 状态变化的种类，changes 掩码中每种占一位
+    enum Change {
+        MOVED, PUSHED, BOXES_LEFT, LEVEL, WON;
+
+        final int bit = 1 << ordinal();
+
+        boolean in(int changes) {
+            return (changes & bit) != 0;
+        }
+    }
+
+    interface Listener {
+        void stateChanged(int changes);
+    }
+
+    // 在调用 load / tryMove / undo 的线程上回调，为 null 时不通知
+    Listener listener;
+
+    int[][] map;
+    final Point player = new Point();
+    int boxesLeft;
+    long hash;
+    int pushes;
+
+    // 每格一个随机数：箱子在该格 / 玩家在该格；种子固定，同一关卡每次得到相同的哈希
+    private long[] boxKeys = new long[0];
+    private long[] playerKeys = new long[0];
+    private int width;
+    // 每步一项：方向（低两位）| 是否推了箱子（第三位）
+    // 预先分配 4096 步，正常对局走棋时不再分配；更长的对局才翻倍扩容，均摊每步 O(1)
+    private int[] history = new int[4096];
+    private int steps;
+
+    void load(int[][] levelData) {
+        boxesLeft = 0;
+        pushes = 0;
+        steps = 0;
+        map = new int[levelData.length][];
+        width = 0;
+        for (int[] row : levelData) {
+            width = Math.max(width, row.length);
+        }
+        int cells = width * levelData.length;
+        if (boxKeys.length < cells) {
+            boxKeys = new long[cells];
+            playerKeys = new long[cells];
+            SplittableRandom random = new SplittableRandom(0x50B0BA4L);
+            for (int i = 0; i < cells; i++) {
+                boxKeys[i] = random.nextLong();
+                playerKeys[i] = random.nextLong();
+            }
+        }
+
+        for (int i = 0; i < levelData.length; i++) {
+            map[i] = new int[levelData[i].length];
+            System.arraycopy(levelData[i], 0, map[i], 0, levelData[i].length);
+
+            for (int j = 0; j < levelData[i].length; j++) {
+                int tile = levelData[i][j];
+                if (tile == TileType.PLAYER.id || tile == TileType.PLAYER_ON_TARGET.id) {
+                    player.setLocation(j, i);
+                }
+                if (tile == TileType.BOX.id) {
+                    boxesLeft++;
+                }
+            }
+        }
+        hash = playerKeys[cell(player.x, player.y)];
+        for (int y = 0; y < map.length; y++) {
+            for (int x = 0; x < map[y].length; x++) {
+                if (SokobanSolver.isBoxId(map[y][x])) hash ^= boxKeys[cell(x, y)];
+            }
+        }
+        if (listener != null) {
+            listener.stateChanged(Change.LEVEL.bit | Change.MOVED.bit | Change.BOXES_LEFT.bit | Change.WON.bit);
+        }
+    }
+
+    // 最长一行的长度
+    int width() {
+        return width;
+    }
+
+    // 当前关卡开始以来（扣除撤销）的步数
+    int steps() {
+        return steps;
+    }
+
+    // 上一步：方向（0~3），推了箱子再加 4；还没走过时返回 -1
+    int lastMove() {
+        return steps == 0 ? -1 : history[steps - 1];
+    }
+
+    // 当前关卡开始以来（扣除撤销）的走法，LURD 格式
+    String moves() {
+        StringBuilder sb = new StringBuilder(steps);
+        for (int i = 0; i < steps; i++) {
+            char move = SokobanSolver.MOVES[history[i] & 3];
+            sb.append((history[i] & 4) != 0 ? Character.toUpperCase(move) : move);
+        }
+        return sb.toString();
+    }
+
+    private int cell(int x, int y) {
+        return y * width + x;
+    }
+
+    int tryMove(int dx, int dy) {
+        int boxesBefore = boxesLeft;
+        int newX = player.x + dx;
+        int newY = player.y + dy;
+
+        // 检查边界
+        if (newX < 0 || newY < 0 || newY >= map.length || newX >= map[newY].length) {
+            return BLOCKED;
+        }
+
+        TileType targetTile = TileType.fromId(map[newY][newX]);
+
+        // 检查是否撞墙
+        if (targetTile.isObstacle) {
+            return BLOCKED;
+        }
+
+        boolean pushed = false;
+        // 检查是否推动箱子
+        if (targetTile == TileType.BOX || targetTile == TileType.BOX_ON_TARGET) {
+            int boxNewX = newX + dx;
+            int boxNewY = newY + dy;
+
+            // 检查箱子是否可以推动
+            if (boxNewX < 0 || boxNewY < 0 || boxNewY >= map.length || boxNewX >= map[boxNewY].length) {
+                return BLOCKED;
+            }
+
+            TileType newBoxTile = TileType.fromId(map[boxNewY][boxNewX]);
+            if (newBoxTile.isObstacle || newBoxTile == TileType.BOX || newBoxTile == TileType.BOX_ON_TARGET) {
+                return BLOCKED;
+            }
+
+            // 移动箱子
+            if (newBoxTile == TileType.TARGET) {
+                map[boxNewY][boxNewX] = TileType.BOX_ON_TARGET.id;
+                boxesLeft--;
+            } else {
+                map[boxNewY][boxNewX] = TileType.BOX.id;
+            }
+
+            // 更新原箱子位置
+            if (targetTile == TileType.BOX_ON_TARGET) {
+                map[newY][newX] = TileType.TARGET.id;
+                boxesLeft++;
+            } else {
+                map[newY][newX] = TileType.FLOOR.id;
+            }
+            hash ^= boxKeys[cell(newX, newY)] ^ boxKeys[cell(boxNewX, boxNewY)];
+            pushes++;
+            pushed = true;
+        }
+
+        // 更新玩家位置
+        TileType currentPlayerTile = TileType.fromId(map[player.y][player.x]);
+        if (currentPlayerTile == TileType.PLAYER_ON_TARGET) {
+            map[player.y][player.x] = TileType.TARGET.id;
+        } else {
+            map[player.y][player.x] = TileType.FLOOR.id;
+        }
+
+        player.translate(dx, dy);
+
+        TileType newPlayerTile = TileType.fromId(map[player.y][player.x]);
+        if (newPlayerTile == TileType.TARGET) {
+            map[player.y][player.x] = TileType.PLAYER_ON_TARGET.id;
+        } else {
+            map[player.y][player.x] = TileType.PLAYER.id;
+        }
+        hash ^= playerKeys[cell(player.x - dx, player.y - dy)] ^ playerKeys[cell(player.x, player.y)];
+
+        if (steps == history.length) history = Arrays.copyOf(history, steps * 2);
+        history[steps++] = (dy < 0 ? 0 : dx < 0 ? 1 : dy > 0 ? 2 : 3) | (pushed ? 4 : 0);
+        changed(pushed, boxesBefore);
+        return pushed ? PUSHED : MOVED;
+    }
+
+    // 撤销上一步，返回撤销前那一步的结果（MOVED / PUSHED），没有可撤销的步时返回 BLOCKED
+    int undo() {
+        if (steps == 0) return BLOCKED;
+        int boxesBefore = boxesLeft;
+        int entry = history[--steps];
+        int dx = SokobanSolver.DX[entry & 3];
+        int dy = SokobanSolver.DY[entry & 3];
+        int x = player.x;
+        int y = player.y;
+
+        map[y][x] = map[y][x] == TileType.PLAYER_ON_TARGET.id ? TileType.TARGET.id : TileType.FLOOR.id;
+        boolean pushed = (entry & 4) != 0;
+        if (pushed) {
+            // 箱子从玩家前方退回玩家原来所在的格子
+            int boxX = x + dx;
+            int boxY = y + dy;
+            if (map[boxY][boxX] == TileType.BOX_ON_TARGET.id) {
+                map[boxY][boxX] = TileType.TARGET.id;
+                boxesLeft++;
+            } else {
+                map[boxY][boxX] = TileType.FLOOR.id;
+            }
+            if (map[y][x] == TileType.TARGET.id) {
+                map[y][x] = TileType.BOX_ON_TARGET.id;
+                boxesLeft--;
+            } else {
+                map[y][x] = TileType.BOX.id;
+            }
+            hash ^= boxKeys[cell(boxX, boxY)] ^ boxKeys[cell(x, y)];
+            pushes--;
+        }
+
+        player.translate(-dx, -dy);
+        map[player.y][player.x] = map[player.y][player.x] == TileType.TARGET.id
+                ? TileType.PLAYER_ON_TARGET.id : TileType.PLAYER.id;
+        hash ^= playerKeys[cell(x, y)] ^ playerKeys[cell(player.x, player.y)];
+        changed(pushed, boxesBefore);
+        return pushed ? PUSHED : MOVED;
+    }
+
+    private void changed(boolean pushed, int boxesBefore) {
+        if (listener == null) return;
+        int changes = Change.MOVED.bit;
+        if (pushed) changes |= Change.PUSHED.bit;
+        if (boxesLeft != boxesBefore) changes |= Change.BOXES_LEFT.bit;
+        if ((boxesLeft == 0) != (boxesBefore == 0)) changes |= Change.WON.bit;
+        listener.stateChanged(changes);
+    }
+
+    boolean isWon() {
+        return boxesLeft == 0;
+    }
+}
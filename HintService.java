@@ -0,0 +1,105 @@
+package tom.jiafei;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// 后台提示服务：每次局面变化都在工作线程上重新求解，旧的搜索随即作废
+// restart/cancel/shutdown 只在 EDT 上调用，结果也回到 EDT 上交付
+final class HintService {
+    private static final int NODE_BUDGET = 200_000;
+    private static final int CACHE_LIMIT = 4096;
+
+    private final Consumer<String> listener;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sokoban-hint");
+        t.setDaemon(true);
+        return t;
+    });
+    // 已分析局面 -> 剩余解（空串表示无解或超出搜索预算）
+    private final Map<String, String> cache = Collections.synchronizedMap(
+            new LinkedHashMap<String, String>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > CACHE_LIMIT;
+                }
+            });
+
+    private volatile int generation;
+    private Future<?> pending;
+    // 仅在工作线程上访问
+    private SokobanSolver solver;
+
+    HintService(Consumer<String> listener) {
+        this.listener = listener;
+    }
+
+    void restart(int[][] map) {
+        cancel();
+        int token = generation;
+        int[][] snapshot = SokobanSolver.copyOf(map);
+        pending = worker.submit(() -> search(snapshot, token));
+    }
+
+    // 使用预先分析好的关卡布局，之后同一关的搜索不必再做静态分析
+    void useLayout(SokobanSolver layout) {
+        worker.execute(() -> {
+            if (solver != layout) {
+                solver = layout;
+                cache.clear();
+            }
+        });
+    }
+
+    void cancel() {
+        generation++;
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    void shutdown() {
+        cancel();
+        worker.shutdownNow();
+    }
+
+    private void search(int[][] map, int token) {
+        if (solver == null || !solver.matchesLayout(map)) {
+            solver = new SokobanSolver(map);
+            cache.clear();
+        }
+        int[] boxes = solver.boxCells(map);
+        int player = solver.playerCell(map);
+        String moves = cache.get(SokobanSolver.stateKey(boxes, player));
+        if (moves == null) {
+            SokobanSolver.Result result = solver.solve(boxes, player, NODE_BUDGET,
+                    () -> generation != token || Thread.currentThread().isInterrupted());
+            if (result.status == SokobanSolver.Status.CANCELLED) return;
+            moves = result.status == SokobanSolver.Status.SOLVED ? result.moves : "";
+            remember(boxes, player, moves);
+        }
+
+        String hint = moves;
+        SwingUtilities.invokeLater(() -> {
+            if (generation == token) listener.accept(hint);
+        });
+    }
+
+    // 解路径上经过的每个局面都记下剩余解，沿提示走时无需再次搜索
+    private void remember(int[] boxes, int player, String moves) {
+        int[] state = boxes.clone();
+        Arrays.sort(state);
+        cache.put(SokobanSolver.stateKey(state, player), moves);
+        for (int i = 0; i < moves.length(); i++) {
+            player = solver.applyMove(state, player, moves.charAt(i));
+            cache.put(SokobanSolver.stateKey(state, player), moves.substring(i + 1));
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package tom.jiafei;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 历史记录表格的惰性数据模型：只缓存最近用到的几页，缺页时在后台线程读取，读完再通知表格刷新
+// 默认按时间从新到旧，直接从存储末尾倒着读，打开时只读第一页
+// 统计线程同时倒着扫描一遍，逐步增加行数，并为关卡和步数列建立取值直方图；
+// 按这两列排序时，每页再流式扫描一遍，只保留排名落在该页内的记录，内存与记录总数无关
+final class HistoryTableModel extends AbstractTableModel {
+    static final int PAGE = 200;
+    private static final int CACHED_PAGES = 8;
+
+    private static final int LEVEL = 0;
+    private static final int MOVES = 1;
+    private static final int TIME = 2;
+    private static final String[] NAMES = {"关卡", "步数", "时间"};
+
+    // 某一列的取值 → 排在它前面的记录数
+    private static final class Histogram {
+        final int[] keys;
+        final int[] below;
+
+        Histogram(Map<Integer, int[]> counts) {
+            keys = new int[counts.size()];
+            below = new int[counts.size()];
+            int i = 0;
+            for (int key : new TreeSet<>(counts.keySet())) {
+                keys[i] = key;
+                if (i + 1 < keys.length) below[i + 1] = below[i] + counts.get(key)[0];
+                i++;
+            }
+        }
+
+        // 统计之后才追加的记录可能带来新的取值，这时返回 -1
+        int below(int key) {
+            int i = Arrays.binarySearch(keys, key);
+            return i < 0 ? -1 : below[i];
+        }
+
+        // 升序排名为 rank 的记录的取值
+        int keyAt(int rank) {
+            int i = Arrays.binarySearch(below, rank);
+            if (i < 0) return keys[-i - 2];
+            // 取值相同的计数不会为 0，below 严格递增
+            return keys[i];
+        }
+    }
+
+    private final RecordStore store;
+    private final String user;
+    // 一个线程统计行数，另一个按需读页，统计期间也能立刻显示第一页
+    private final ExecutorService loader = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "sokoban-history");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean closed;
+    private volatile int generation;
+
+    // 以下只在 EDT 上访问
+    private final Map<Integer, GameRecord[]> pages = new LinkedHashMap<Integer, GameRecord[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, GameRecord[]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    private int rowCount;
+    private boolean counted;
+    private Histogram levels;
+    private Histogram moves;
+    private int sortColumn = TIME;
+    private boolean ascending;
+
+    HistoryTableModel(RecordStore store, String user) {
+        this.store = store;
+        this.user = user;
+        loader.execute(this::count);
+        // 行数还没出来时先按一整页显示，读到的页比这短时再缩回
+        rowCount = PAGE;
+        request(0);
+    }
+
+    private void count() {
+        Map<Integer, int[]> levelCounts = new HashMap<>();
+        Map<Integer, int[]> moveCounts = new HashMap<>();
+        int[] n = {0};
+        try {
+            store.scanBackward(user, r -> {
+                levelCounts.computeIfAbsent(r.level, k -> new int[1])[0]++;
+                moveCounts.computeIfAbsent(r.moves, k -> new int[1])[0]++;
+                if (++n[0] % 1000 == 0) {
+                    int sofar = n[0];
+                    SwingUtilities.invokeLater(() -> grow(sofar));
+                }
+                return !closed;
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (closed) return;
+        Histogram levelHistogram = new Histogram(levelCounts);
+        Histogram moveHistogram = new Histogram(moveCounts);
+        int total = n[0];
+        SwingUtilities.invokeLater(() -> {
+            levels = levelHistogram;
+            moves = moveHistogram;
+            counted = true;
+            if (total < rowCount) {
+                int old = rowCount;
+                rowCount = total;
+                fireTableRowsDeleted(total, old - 1);
+            } else {
+                grow(total);
+            }
+        });
+    }
+
+    private void grow(int count) {
+        if (count > rowCount) {
+            int old = rowCount;
+            rowCount = count;
+            fireTableRowsInserted(old, count - 1);
+        }
+    }
+
+    boolean isCounted() {
+        return counted;
+    }
+
+    int getSortColumn() {
+        return sortColumn;
+    }
+
+    boolean isAscending() {
+        return ascending;
+    }
+
+    // 行数统计完成前不能换排序；同一列再点一次反向
+    void sortBy(int column) {
+        if (!counted) return;
+        if (column == sortColumn) {
+            ascending = !ascending;
+        } else {
+            sortColumn = column;
+            ascending = column != TIME;
+        }
+        generation++;
+        pages.clear();
+        loading.clear();
+        fireTableDataChanged();
+    }
+
+    void close() {
+        closed = true;
+        loader.shutdownNow();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column != sortColumn) return NAMES[column];
+        return NAMES[column] + (ascending ? " ▲" : " ▼");
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == TIME ? Date.class : Integer.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        GameRecord[] rows = pages.get(row / PAGE);
+        if (rows == null) {
+            request(row / PAGE);
+            return null;
+        }
+        GameRecord r = row % PAGE < rows.length ? rows[row % PAGE] : null;
+        if (r == null) return null;
+        switch (column) {
+            case LEVEL:
+                return r.level + 1;
+            case MOVES:
+                return r.moves;
+            default:
+                return new Date(r.timestamp);
+        }
+    }
+
+    private void request(int page) {
+        if (!loading.add(page)) return;
+        int gen = generation;
+        int column = sortColumn;
+        boolean asc = ascending;
+        int total = rowCount;
+        Histogram histogram = column == LEVEL ? levels : moves;
+        loader.execute(() -> {
+            if (closed || gen != generation) return;
+            GameRecord[] rows = null;
+            try {
+                rows = load(page, column, asc, total, histogram);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                publish(page, gen, rows);
+            }
+        });
+    }
+
+    // 读取失败时只清掉 loading，不缓存空页，表格下次绘制到这一页时会重新读取
+    private void publish(int page, int gen, GameRecord[] loaded) {
+        SwingUtilities.invokeLater(() -> {
+            if (gen != generation) return;
+            loading.remove(page);
+            if (loaded == null) return;
+            pages.put(page, loaded);
+            int from = page * PAGE;
+            // 统计完成前第一页不满一页，说明总共就这么多
+            if (!counted && loaded.length < PAGE && from + loaded.length < rowCount) {
+                int old = rowCount;
+                rowCount = from + loaded.length;
+                fireTableRowsDeleted(rowCount, old - 1);
+            }
+            int to = Math.min(rowCount, from + PAGE) - 1;
+            if (to >= from) fireTableRowsUpdated(from, to);
+        });
+    }
+
+    private GameRecord[] load(int page, int column, boolean asc, int total, Histogram histogram) throws IOException {
+        int from = page * PAGE;
+        if (column == TIME && !asc) {
+            return store.newest(user, from, PAGE).toArray(new GameRecord[0]);
+        }
+
+        // 换算成升序排名区间 [lo, hi)
+        int to = Math.min(total, from + PAGE);
+        if (to <= from) return new GameRecord[0];
+        int lo = asc ? from : total - to;
+        int hi = asc ? to : total - from;
+        GameRecord[] rows = new GameRecord[hi - lo];
+        int lowKey = column == TIME ? 0 : histogram.keyAt(lo);
+        int highKey = column == TIME ? 0 : histogram.keyAt(hi - 1);
+        // 区间内每个取值已经遇到的记录数；相同取值按从新到旧排列
+        Map<Integer, int[]> seen = new HashMap<>();
+        int[] index = {0};
+        store.scanBackward(user, r -> {
+            int i = index[0]++;
+            int rank;
+            if (column == TIME) {
+                rank = total - 1 - i;
+                if (rank < lo) return false;
+            } else {
+                int key = column == LEVEL ? r.level : r.moves;
+                if (key < lowKey || key > highKey) return !closed;
+                int below = histogram.below(key);
+                // 统计之后才追加、取值没统计过的记录不参与这次排序
+                if (below < 0) return !closed;
+                rank = below + seen.computeIfAbsent(key, k -> new int[1])[0]++;
+            }
+            if (rank >= lo && rank < hi) rows[rank - lo] = r;
+            return !closed;
+        });
+        if (!asc) {
+            Collections.reverse(Arrays.asList(rows));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,126 @@
+package tom.jiafei;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// 多个游戏进程共享同一批数据文件时的写入协调：进程内用监视器，进程间用锁文件上的 FileLock
+// 追加先写进重做日志并落盘，再写目标文件，最后清空日志；写到一半崩溃的话，下一个拿到锁的进程照日志重做
+// 只有写入方加锁，读取方只读到最后一个换行符为止，永远不会被写入方阻塞
+final class JournaledWriter implements Closeable {
+    private static final int MAGIC = 0x534B4A57; // "SKJW"
+
+    interface Action<T> {
+        T run() throws IOException;
+    }
+
+    private final FileChannel lockChannel;
+    private final RandomAccessFile journal;
+    // 目标文件都和日志在同一目录，日志里只记文件名
+    private final File dir;
+    private boolean locked;
+
+    JournaledWriter(File lockFile, File journalFile) throws IOException {
+        lockChannel = FileChannel.open(lockFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = new RandomAccessFile(journalFile, "rw");
+        dir = journalFile.getAbsoluteFile().getParentFile();
+    }
+
+    // 持有跨进程写锁执行 action，进入时先处理上一个持锁者留下的日志
+    synchronized <T> T write(Action<T> action) throws IOException {
+        if (locked) return action.run();
+        FileLock lock = lockChannel.lock();
+        try {
+            locked = true;
+            recover();
+            return action.run();
+        } finally {
+            locked = false;
+            lock.release();
+        }
+    }
+
+    // 只能在 write 内调用
+    void append(File target, byte[] bytes) throws IOException {
+        if (!locked) throw new IllegalStateException("append outside write()");
+        try (RandomAccessFile out = new RandomAccessFile(target, "rw")) {
+            long offset = committedLength(out);
+            byte[] name = target.getName().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer entry = ByteBuffer.allocate(4 + 2 + name.length + 8 + 4 + bytes.length + 8);
+            entry.putInt(MAGIC).putShort((short) name.length).put(name)
+                    .putLong(offset).putInt(bytes.length).put(bytes);
+            CRC32 crc = new CRC32();
+            crc.update(entry.array(), 0, entry.position());
+            entry.putLong(crc.getValue());
+
+            journal.setLength(0);
+            journal.write(entry.array());
+            journal.getFD().sync();
+
+            out.seek(offset);
+            out.write(bytes);
+            out.getFD().sync();
+
+            journal.setLength(0);
+        }
+    }
+
+    // 目标文件末尾没有换行的半行：日志为空时说明是旧版本或手工编辑留下的，补一个换行
+    private static long committedLength(RandomAccessFile out) throws IOException {
+        long length = out.length();
+        if (length == 0) return 0;
+        out.seek(length - 1);
+        if (out.read() == '\n') return length;
+        out.write('\n');
+        return length + 1;
+    }
+
+    private void recover() throws IOException {
+        if (journal.length() == 0) return;
+        journal.seek(0);
+        byte[] entry = new byte[(int) Math.min(journal.length(), Integer.MAX_VALUE)];
+        journal.readFully(entry);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry))) {
+            if (in.readInt() != MAGIC) throw new IOException("日志格式错误");
+            byte[] name = new byte[in.readUnsignedShort()];
+            in.readFully(name);
+            long offset = in.readLong();
+            int size = in.readInt();
+            if (size < 0 || size > entry.length) throw new IOException("日志格式错误");
+            byte[] bytes = new byte[size];
+            in.readFully(bytes);
+            int length = entry.length - in.available();
+            CRC32 crc = new CRC32();
+            crc.update(entry, 0, length);
+            if (in.readLong() == crc.getValue()) {
+                File target = new File(dir, new String(name, StandardCharsets.UTF_8));
+                try (RandomAccessFile out = new RandomAccessFile(target, "rw")) {
+                    out.setLength(offset);
+                    out.seek(offset);
+                    out.write(bytes);
+                    out.getFD().sync();
+                }
+            }
+        } catch (IOException e) {
+            // 日志没写完整就崩溃了，目标文件还没动过，丢弃即可
+        }
+        journal.setLength(0);
+        journal.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+        lockChannel.close();
+    }
+}
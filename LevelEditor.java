@@ -0,0 +1,268 @@
+package tom.jiafei;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tom.jiafei.SokobanGame.TileType;
+
+// 关卡编辑器：选择图块后在网格上点击或拖动绘制，右键画地板
+// 每改一格由 EditorAnalysis 增量更新格式检查和死格，只重绘图块或死格状态变了的区域；
+// 停笔片刻后在后台线程用小预算试解一次，再改动时作废
+final class LevelEditor extends JDialog {
+    private static final int MAX_CELL = 40;
+    private static final int PROBE_BUDGET = 50_000;
+    private static final Color DEAD_MARK = new Color(200, 0, 0, 90);
+
+    private EditorAnalysis analysis;
+    private TileType brush = TileType.WALL;
+    private int cellSize;
+    private final EditorCanvas canvas = new EditorCanvas();
+    private final JLabel status = new JLabel(" ");
+    private final JLabel probe = new JLabel(" ");
+    private final Timer probeDelay = new Timer(200, e -> startProbe());
+    private final ExecutorService prober = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sokoban-editor-probe");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile int generation;
+    private long lastAnalysisNanos;
+
+    LevelEditor(Frame owner, int[][] level) {
+        super(owner, "关卡编辑器", false);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        probeDelay.setRepeats(false);
+        initUI();
+        load(level);
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    private void initUI() {
+        JPanel palette = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 4));
+        ButtonGroup group = new ButtonGroup();
+        for (TileType type : TileType.values()) {
+            JToggleButton button = new JToggleButton(type.description);
+            button.setIcon(new ColorIcon(type.color));
+            button.setSelected(type == brush);
+            button.addActionListener(e -> brush = type);
+            group.add(button);
+            palette.add(button);
+        }
+
+        JSpinner widthSpinner = new JSpinner(new SpinnerNumberModel(10, 3, 100, 1));
+        JSpinner heightSpinner = new JSpinner(new SpinnerNumberModel(8, 3, 100, 1));
+        JButton newButton = new JButton("新建");
+        newButton.addActionListener(e -> load(emptyRoom((Integer) widthSpinner.getValue(), (Integer) heightSpinner.getValue())));
+        JButton exportButton = new JButton("导出到关卡包");
+        exportButton.addActionListener(e -> export());
+        JPanel tools = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 4));
+        tools.add(new JLabel("宽"));
+        tools.add(widthSpinner);
+        tools.add(new JLabel("高"));
+        tools.add(heightSpinner);
+        tools.add(newButton);
+        tools.add(exportButton);
+
+        JPanel north = new JPanel(new GridLayout(2, 1));
+        north.add(palette);
+        north.add(tools);
+
+        JPanel south = new JPanel(new GridLayout(2, 1));
+        south.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+        south.add(status);
+        south.add(probe);
+
+        setLayout(new BorderLayout());
+        add(north, BorderLayout.NORTH);
+        add(new JScrollPane(canvas), BorderLayout.CENTER);
+        add(south, BorderLayout.SOUTH);
+
+        MouseAdapter painter = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                paintAt(e);
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                paintAt(e);
+            }
+        };
+        canvas.addMouseListener(painter);
+        canvas.addMouseMotionListener(painter);
+    }
+
+    private static int[][] emptyRoom(int width, int height) {
+        int[][] map = new int[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean border = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+                map[y][x] = border ? TileType.WALL.id : TileType.FLOOR.id;
+            }
+        }
+        return map;
+    }
+
+    private void load(int[][] level) {
+        long start = System.nanoTime();
+        analysis = new EditorAnalysis(level);
+        lastAnalysisNanos = System.nanoTime() - start;
+        // 大地图缩小格子，100x100 也能放进一屏
+        cellSize = Math.max(6, Math.min(MAX_CELL, 800 / Math.max(analysis.width, analysis.height)));
+        canvas.setPreferredSize(new Dimension(analysis.width * cellSize, analysis.height * cellSize));
+        canvas.revalidate();
+        canvas.repaint();
+        changed();
+    }
+
+    private void paintAt(MouseEvent e) {
+        int x = e.getX() / cellSize;
+        int y = e.getY() / cellSize;
+        if (x < 0 || y < 0 || x >= analysis.width || y >= analysis.height) return;
+        int id = SwingUtilities.isRightMouseButton(e) ? TileType.FLOOR.id : brush.id;
+        if (analysis.get(x, y) == id) return;
+
+        long start = System.nanoTime();
+        Rectangle dirty = analysis.set(x, y, id);
+        lastAnalysisNanos = System.nanoTime() - start;
+        // 只重绘图块或死格状态变了的那一块
+        canvas.repaint(dirty.x * cellSize, dirty.y * cellSize, dirty.width * cellSize, dirty.height * cellSize);
+        changed();
+    }
+
+    private void changed() {
+        List<String> problems = analysis.problems();
+        status.setText(String.format("%s    死格 %d 个    分析 %.2f ms",
+                problems.isEmpty() ? "格式正确" : String.join("；", problems),
+                analysis.deadCount(), lastAnalysisNanos / 1e6));
+        generation++;
+        probe.setText(problems.isEmpty() ? "试解：等待中…" : "试解：格式不正确，跳过");
+        if (problems.isEmpty()) {
+            probeDelay.restart();
+        } else {
+            probeDelay.stop();
+        }
+    }
+
+    private void startProbe() {
+        int token = generation;
+        int[][] map = analysis.toMap();
+        probe.setText("试解：搜索中…");
+        prober.execute(() -> {
+            if (token != generation) return;
+            long start = System.nanoTime();
+            SokobanSolver.Result result = new SokobanSolver(map).solve(map, PROBE_BUDGET, () -> token != generation);
+            double ms = (System.nanoTime() - start) / 1e6;
+            String text;
+            switch (result.status) {
+                case SOLVED:
+                    text = String.format("试解：可解，%d 步（展开 %d 个节点，%.0f ms）", result.moves.length(), result.expanded, ms);
+                    break;
+                case UNSOLVABLE:
+                    text = String.format("试解：无解（%.0f ms）", ms);
+                    break;
+                case BUDGET_EXCEEDED:
+                    text = String.format("试解：%d 个节点内未找到解", PROBE_BUDGET);
+                    break;
+                default:
+                    return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (token == generation) probe.setText(text);
+            });
+        });
+    }
+
+    // 追加到已有关卡包，文件不存在时新建
+    private void export() {
+        List<String> problems = analysis.problems();
+        if (!problems.isEmpty() && JOptionPane.showConfirmDialog(this,
+                "关卡存在问题：" + String.join("；", problems) + "\n仍要导出吗？",
+                "导出", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser(new File("."));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        try {
+            LevelPack pack = file.exists() ? LevelPack.read(file.toPath()) : new LevelPack();
+            String name = JOptionPane.showInputDialog(this, "关卡名称", "第" + (pack.size() + 1) + "关");
+            if (name == null) return;
+            pack.add(name.trim(), analysis.toMap());
+            pack.write(file.toPath());
+            JOptionPane.showMessageDialog(this, "已导出为 " + file.getName() + " 中的第 " + pack.size() + " 关");
+        } catch (IOException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "导出失败：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        generation++;
+        probeDelay.stop();
+        prober.shutdownNow();
+        super.dispose();
+    }
+
+    private final class EditorCanvas extends JPanel {
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            // 只画裁剪区域内的格子
+            Rectangle clip = g.getClipBounds();
+            int x0 = Math.max(0, clip.x / cellSize);
+            int y0 = Math.max(0, clip.y / cellSize);
+            int x1 = Math.min(analysis.width - 1, (clip.x + clip.width) / cellSize);
+            int y1 = Math.min(analysis.height - 1, (clip.y + clip.height) / cellSize);
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    int px = x * cellSize;
+                    int py = y * cellSize;
+                    g.setColor(TileType.fromId(analysis.get(x, y)).color);
+                    g.fillRect(px, py, cellSize, cellSize);
+                    if (analysis.isDead(x, y)) {
+                        g.setColor(DEAD_MARK);
+                        g.fillRect(px, py, cellSize, cellSize);
+                    }
+                    g.setColor(Color.DARK_GRAY);
+                    g.drawRect(px, py, cellSize - 1, cellSize - 1);
+                }
+            }
+        }
+    }
+
+    private static final class ColorIcon implements Icon {
+        private final Color color;
+
+        ColorIcon(Color color) {
+            this.color = color;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.setColor(color);
+            g.fillRect(x, y, 12, 12);
+            g.setColor(Color.BLACK);
+            g.drawRect(x, y, 11, 11);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return 12;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return 12;
+        }
+    }
+}
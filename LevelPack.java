@@ -0,0 +1,91 @@
+package tom.jiafei;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// 关卡包文本格式：每关若干行，每行一串图块编号（与 getLevels() 中的整数相同，0~6），关卡之间空一行
+// 以 ; 开头的行是注释，紧挨在关卡前的注释作为关卡名
+final class LevelPack {
+    final List<String> names = new ArrayList<>();
+    final List<int[][]> levels = new ArrayList<>();
+
+    static LevelPack builtIn() {
+        LevelPack pack = new LevelPack();
+        int[][][] levels = SokobanGame.getLevels();
+        for (int i = 0; i < levels.length; i++) {
+            pack.add("第" + (i + 1) + "关", levels[i]);
+        }
+        return pack;
+    }
+
+    void add(String name, int[][] level) {
+        names.add(name);
+        levels.add(level);
+    }
+
+    int size() {
+        return levels.size();
+    }
+
+    static LevelPack read(Path file) throws IOException {
+        LevelPack pack = new LevelPack();
+        List<int[]> rows = new ArrayList<>();
+        String name = null;
+        int lineNumber = 0;
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.startsWith(";")) {
+                    if (rows.isEmpty()) name = line.substring(1).trim();
+                    continue;
+                }
+                if (line.isEmpty()) {
+                    name = pack.flush(name, rows);
+                    continue;
+                }
+                int[] row = new int[line.length()];
+                for (int i = 0; i < row.length; i++) {
+                    char c = line.charAt(i);
+                    if (c < '0' || c > '9') {
+                        throw new IOException(file + " 第 " + lineNumber + " 行含有非数字字符: " + c);
+                    }
+                    row[i] = c - '0';
+                }
+                rows.add(row);
+            }
+        }
+        pack.flush(name, rows);
+        return pack;
+    }
+
+    private String flush(String name, List<int[]> rows) {
+        if (rows.isEmpty()) return name;
+        add(name != null && !name.isEmpty() ? name : "第" + (size() + 1) + "关", rows.toArray(new int[0][]));
+        rows.clear();
+        return null;
+    }
+
+    void write(Path file) throws IOException {
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            for (int i = 0; i < size(); i++) {
+                if (i > 0) pw.println();
+                pw.println("; " + names.get(i));
+                for (int[] row : levels.get(i)) {
+                    StringBuilder sb = new StringBuilder(row.length);
+                    for (int id : row) {
+                        sb.append((char) ('0' + id));
+                    }
+                    pw.println(sb);
+                }
+            }
+        }
+    }
+}
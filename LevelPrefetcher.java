@@ -0,0 +1,85 @@
+package tom.jiafei;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+// 在后台准备当前关卡及前后各一关：复制关卡数据、静态分析（死格、推动距离）、预先绘制不变的背景层
+// 换关时直接取用已准备好的结果；还没准备好就照常同步加载，准备好后再通过 onReady 补上
+// around/take 只在 EDT 上调用，onReady 也在 EDT 上回调
+final class LevelPrefetcher {
+    static final class Prepared {
+        final int level;
+        final int[][] data;
+        final SokobanSolver layout;
+        // 墙、地板和目标点，只依赖关卡布局
+        final BufferedImage background;
+
+        Prepared(int level, int[][] data, SokobanSolver layout, BufferedImage background) {
+            this.level = level;
+            this.data = data;
+            this.layout = layout;
+            this.background = background;
+        }
+    }
+
+    private final IntFunction<int[][]> source;
+    private final Consumer<Prepared> onReady;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sokoban-prefetch");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private final Map<Integer, Future<Prepared>> prepared = new HashMap<>();
+
+    LevelPrefetcher(IntFunction<int[][]> source, Consumer<Prepared> onReady) {
+        this.source = source;
+        this.onReady = onReady;
+    }
+
+    // 保留 level 及前后各一关，其余丢弃；先准备当前关，再下一关，最后上一关
+    void around(int level, int levelCount) {
+        prepared.entrySet().removeIf(e -> {
+            boolean far = Math.abs(e.getKey() - level) > 1;
+            if (far) e.getValue().cancel(false);
+            return far;
+        });
+        for (int l : new int[]{level, level + 1, level - 1}) {
+            if (l < 0 || l >= levelCount || prepared.containsKey(l)) continue;
+            prepared.put(l, worker.submit(() -> {
+                Prepared p = prepare(l);
+                SwingUtilities.invokeLater(() -> onReady.accept(p));
+                return p;
+            }));
+        }
+    }
+
+    // 已准备好的结果，没有或还在准备时返回 null，不等待
+    Prepared take(int level) {
+        Future<Prepared> future = prepared.get(level);
+        if (future == null || !future.isDone()) return null;
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private Prepared prepare(int level) {
+        int[][] data = SokobanSolver.copyOf(source.apply(level));
+        return new Prepared(level, data, new SokobanSolver(data), BoardRenderer.renderBackground(data));
+    }
+}
@@ -0,0 +1,146 @@
+package tom.jiafei;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.function.IntConsumer;
+
+// 选关界面：可滚动的缩略图网格，双击或回车进入所选关卡
+// JList 只绘制可见的格子，因此只有可见关卡会向 ThumbnailCache 请求缩略图；
+// 滚出视野的请求在后台线程执行前被丢弃，几千关的关卡包滚动时也不会积压
+final class LevelSelectDialog extends JDialog {
+    private static final int CELL_WIDTH = ThumbnailCache.SIZE + 24;
+    private static final int CELL_HEIGHT = ThumbnailCache.SIZE + 36;
+    // 同一进程内的选关窗口共用
+    private static ThumbnailCache cache;
+
+    private final LevelPack pack;
+    private final JList<Integer> list;
+    // 可见范围，滚动时在 EDT 上更新，后台线程只读
+    private volatile int firstVisible;
+    private volatile int lastVisible = -1;
+
+    LevelSelectDialog(Frame owner, LevelPack pack, int current, IntConsumer onSelect) {
+        super(owner, "选择关卡", true);
+        this.pack = pack;
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        list = new JList<>(new AbstractListModel<Integer>() {
+            @Override
+            public int getSize() {
+                return pack.size();
+            }
+
+            @Override
+            public Integer getElementAt(int index) {
+                return index;
+            }
+        });
+        list.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        list.setVisibleRowCount(-1);
+        list.setFixedCellWidth(CELL_WIDTH);
+        list.setFixedCellHeight(CELL_HEIGHT);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(new ThumbnailRenderer());
+        list.setSelectedIndex(current);
+
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.getVerticalScrollBar().setUnitIncrement(CELL_HEIGHT / 3);
+        scroll.getViewport().addChangeListener(e -> updateVisible());
+        add(scroll, BorderLayout.CENTER);
+
+        Runnable choose = () -> {
+            int index = list.getSelectedIndex();
+            if (index < 0) return;
+            dispose();
+            onSelect.accept(index);
+        };
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) choose.run();
+            }
+        });
+        list.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "choose");
+        list.getActionMap().put("choose", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                choose.run();
+            }
+        });
+
+        setSize(6 * CELL_WIDTH + 40, 4 * CELL_HEIGHT + 40);
+        setLocationRelativeTo(owner);
+        SwingUtilities.invokeLater(() -> list.ensureIndexIsVisible(current));
+    }
+
+    static synchronized ThumbnailCache cache() {
+        if (cache == null) {
+            cache = new ThumbnailCache(new File("thumbnails"), ThumbnailCache.MEMORY_BYTES,
+                    Math.min(2, Runtime.getRuntime().availableProcessors()));
+        }
+        return cache;
+    }
+
+    private void updateVisible() {
+        firstVisible = list.getFirstVisibleIndex();
+        lastVisible = list.getLastVisibleIndex();
+    }
+
+    private boolean inView(int index) {
+        return index >= firstVisible && index <= lastVisible;
+    }
+
+    private final class ThumbnailRenderer extends JPanel implements ListCellRenderer<Integer> {
+        private BufferedImage image;
+        private String name;
+        private boolean selected;
+
+        ThumbnailRenderer() {
+            setOpaque(true);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Integer> list, Integer value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            int level = value;
+            // 正在绘制的格子一定可见，顺便刷新可见范围
+            updateVisible();
+            image = cache().get(pack.levels.get(level), () -> inView(level),
+                    () -> list.repaint(list.getCellBounds(level, level)));
+            name = (level + 1) + ". " + pack.names.get(level);
+            selected = isSelected;
+            setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
+            return this;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            int size = ThumbnailCache.SIZE;
+            int x = (getWidth() - size) / 2;
+            if (image != null) {
+                double scale = Math.min(1.0, Math.min((double) size / image.getWidth(), (double) size / image.getHeight()));
+                int w = (int) (image.getWidth() * scale);
+                int h = (int) (image.getHeight() * scale);
+                g.drawImage(image, x + (size - w) / 2, 6 + (size - h) / 2, w, h, null);
+            } else {
+                g.setColor(Color.LIGHT_GRAY);
+                g.drawRect(x, 6, size - 1, size - 1);
+                g.drawString("加载中…", x + 24, 6 + size / 2);
+            }
+            g.setColor(selected ? list.getSelectionForeground() : list.getForeground());
+            FontMetrics fm = g.getFontMetrics();
+            String text = name;
+            while (fm.stringWidth(text) > getWidth() - 4 && text.length() > 1) {
+                text = text.substring(0, text.length() - 1);
+            }
+            g.drawString(text, (getWidth() - fm.stringWidth(text)) / 2, size + 6 + fm.getAscent() + 4);
+        }
+    }
+}
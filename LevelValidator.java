@@ -0,0 +1,216 @@
+package tom.jiafei;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tom.jiafei.SokobanGame.TileType;
+
+// 关卡包批量检查：格式（恰好一个玩家、箱子数等于目标数、四周封闭），在节点预算内求解，
+// 以搜索展开的节点数估计难度；每关一个任务，多线程并行，报告中带每关耗时
+// 命令行：java -cp sokoban.jar tom.jiafei.LevelValidator [关卡包，缺省为内置关卡] [线程数] [节点预算]
+final class LevelValidator {
+    static final int DEFAULT_BUDGET = 1_000_000;
+
+    static final class Report {
+        final int index;
+        final String name;
+        final List<String> problems;
+        final SokobanSolver.Result result;
+        final long nanos;
+
+        Report(int index, String name, List<String> problems, SokobanSolver.Result result, long nanos) {
+            this.index = index;
+            this.name = name;
+            this.problems = problems;
+            this.result = result;
+            this.nanos = nanos;
+        }
+
+        boolean ok() {
+            return problems.isEmpty() && result.status == SokobanSolver.Status.SOLVED;
+        }
+
+        // 展开节点数的以 2 为底的对数，超出预算时是下限
+        double difficulty() {
+            return Math.log(1 + result.expanded) / Math.log(2);
+        }
+
+        int pushes() {
+            int pushes = 0;
+            for (char c : result.moves.toCharArray()) {
+                if (Character.isUpperCase(c)) pushes++;
+            }
+            return pushes;
+        }
+    }
+
+    // 格式问题，没有问题时返回空列表
+    static List<String> problems(int[][] map) {
+        List<String> problems = new ArrayList<>();
+        if (map.length == 0) {
+            problems.add("地图为空");
+            return problems;
+        }
+        int players = 0;
+        int boxes = 0;
+        int targets = 0;
+        int playerX = -1;
+        int playerY = -1;
+        for (int y = 0; y < map.length; y++) {
+            for (int x = 0; x < map[y].length; x++) {
+                int id = map[y][x];
+                if (id < 0 || id > TileType.PLAYER_ON_TARGET.id) {
+                    problems.add(String.format("(%d,%d) 未知图块 %d", x, y, id));
+                    continue;
+                }
+                if (id == TileType.PLAYER.id || id == TileType.PLAYER_ON_TARGET.id) {
+                    players++;
+                    playerX = x;
+                    playerY = y;
+                }
+                if (SokobanSolver.isBoxId(id)) boxes++;
+                if (SokobanSolver.isTargetId(id)) targets++;
+            }
+        }
+        if (players != 1) problems.add("玩家数为 " + players + "，应恰好为 1");
+        if (boxes == 0) problems.add("没有箱子");
+        if (boxes != targets) problems.add("箱子 " + boxes + " 个，目标点 " + targets + " 个");
+        if (players == 1 && !enclosed(map, playerX, playerY)) problems.add("玩家能走出地图边界，四周没有封闭");
+        return problems;
+    }
+
+    // 从玩家出发不穿墙能否走到地图外（包括不等长行缺少的格子）
+    private static boolean enclosed(int[][] map, int startX, int startY) {
+        int width = 0;
+        for (int[] row : map) {
+            width = Math.max(width, row.length);
+        }
+        boolean[] seen = new boolean[width * map.length];
+        int[] queue = new int[seen.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = startY * width + startX;
+        seen[startY * width + startX] = true;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width;
+            int y = cell / width;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + SokobanSolver.DX[d];
+                int ny = y + SokobanSolver.DY[d];
+                if (ny < 0 || ny >= map.length || nx < 0 || nx >= map[ny].length) return false;
+                int next = ny * width + nx;
+                if (seen[next] || map[ny][nx] == TileType.WALL.id) continue;
+                seen[next] = true;
+                queue[tail++] = next;
+            }
+        }
+        return true;
+    }
+
+    static Report check(int index, String name, int[][] map, int budget) {
+        long start = System.nanoTime();
+        List<String> problems = problems(map);
+        SokobanSolver.Result result = problems.isEmpty()
+                ? new SokobanSolver(map).solve(map, budget, () -> Thread.currentThread().isInterrupted())
+                : null;
+        return new Report(index, name, problems, result, System.nanoTime() - start);
+    }
+
+    static List<Report> checkAll(LevelPack pack, int threads, int budget) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Report>> futures = new ArrayList<>();
+            for (int i = 0; i < pack.size(); i++) {
+                int index = i;
+                futures.add(pool.submit(() -> check(index, pack.names.get(index), pack.levels.get(index), budget)));
+            }
+            List<Report> reports = new ArrayList<>();
+            for (Future<Report> future : futures) {
+                reports.add(future.get());
+            }
+            return reports;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("检查被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("检查失败", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    static String format(List<Report> reports, long wallNanos, int threads) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-6s %-16s %-8s %8s %8s %10s %8s %10s  %s%n",
+                "序号", "名称", "结果", "步数", "推动", "展开节点", "难度", "耗时(ms)", "问题"));
+        int ok = 0;
+        long cpu = 0;
+        for (Report r : reports) {
+            cpu += r.nanos;
+            String status;
+            String moves = "-";
+            String pushes = "-";
+            String expanded = "-";
+            String difficulty = "-";
+            if (!r.problems.isEmpty()) {
+                status = "格式错误";
+            } else {
+                switch (r.result.status) {
+                    case SOLVED:
+                        status = "可解";
+                        moves = String.valueOf(r.result.moves.length());
+                        pushes = String.valueOf(r.pushes());
+                        difficulty = String.format("%.1f", r.difficulty());
+                        break;
+                    case UNSOLVABLE:
+                        status = "无解";
+                        break;
+                    default:
+                        status = "超出预算";
+                        difficulty = String.format(">%.1f", r.difficulty());
+                        break;
+                }
+                expanded = String.valueOf(r.result.expanded);
+            }
+            if (r.ok()) ok++;
+            sb.append(String.format("%-8d %-16s %-8s %8s %8s %10s %8s %12.2f  %s%n",
+                    r.index + 1, r.name, status, moves, pushes, expanded, difficulty, r.nanos / 1e6,
+                    String.join("；", r.problems)));
+        }
+        sb.append(String.format("%n共 %d 关，通过 %d 关；%d 个线程，总耗时 %.1f ms，逐关耗时合计 %.1f ms%n",
+                reports.size(), ok, threads, wallNanos / 1e6, cpu / 1e6));
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = args.length > 0 ? Paths.get(args[0]) : null;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int budget = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BUDGET;
+        LevelPack pack = file != null ? LevelPack.read(file) : LevelPack.builtIn();
+
+        long start = System.nanoTime();
+        List<Report> reports = checkAll(pack, threads, budget);
+        String report = format(reports, System.nanoTime() - start, threads);
+
+        Path out = Paths.get((file != null ? file.toString() : "builtin") + ".report.txt");
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            pw.print(report);
+        }
+        System.out.print(report);
+        System.out.println("报告已写入 " + out);
+        for (Report r : reports) {
+            if (!r.ok()) System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package tom.jiafei;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 部署前的容量评估：在一个目录里预置指定规模的 users.dat / records.dat，然后 N 个模拟用户并发地
+// 注册、登录（含一次输错密码）、按已知解法玩若干局并保存记录、隔几局打开一次历史记录首页
+// 每个环节走与游戏相同的 UserStore / RecordStore 代码，报告吞吐量、p50/p99/p999 延迟和文件增长；不需要图形环境
+// 命令行：java -cp sokoban.jar tom.jiafei.LoadGenerator [空目录] [并发用户数] [每用户局数] [预置用户数] [预置记录数] [思考时间 ms]
+final class LoadGenerator {
+    private static final String PASSWORD = "load-test";
+    private static final int HISTORY_EVERY = 5;
+
+    private final Map<String, LatencyHistogram> latency = new LinkedHashMap<>();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final UserStore users;
+    private final RecordStore records;
+    private final String[] solutions;
+    // 只读，各模拟用户共用；GameState.load 会复制一份
+    private final int[][][] levels = SokobanGame.getLevels();
+    private final int thinkMillis;
+
+    LoadGenerator(File dir, String[] solutions, int thinkMillis) {
+        users = new UserStore(new File(dir, "users.dat").getPath());
+        records = new RecordStore(new File(dir, "records").getPath(), new File(dir, "records.dat").getPath());
+        this.solutions = solutions;
+        this.thinkMillis = thinkMillis;
+        for (String op : new String[] {"register", "login", "play", "save", "history"}) {
+            latency.put(op, new LatencyHistogram());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        File dir = new File(args.length > 0 ? args[0] : "load");
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int seedUsers = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        int seedRecords = args.length > 4 ? Integer.parseInt(args[4]) : 100_000;
+        int think = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+        String[] existing = dir.list();
+        if (existing != null && existing.length > 0) {
+            System.err.println("目录不为空: " + dir);
+            return;
+        }
+        dir.mkdirs();
+
+        int[][][] levels = SokobanGame.getLevels();
+        String[] solutions = new String[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            solutions[i] = new SokobanSolver(levels[i]).solve(levels[i], LevelValidator.DEFAULT_BUDGET, () -> false).moves;
+        }
+        seed(dir, seedUsers, seedRecords, levels.length);
+        long usersBefore = new File(dir, "users.dat").length();
+        long recordsBefore = new File(dir, "records.dat").length();
+
+        LoadGenerator load = new LoadGenerator(dir, solutions, think);
+        long nanos = load.run(clients, games);
+        load.records.awaitCompaction();
+        long usersAfter = new File(dir, "users.dat").length();
+        long recordsAfter = directorySize(new File(dir, "records"));
+
+        System.out.printf("%d 个模拟用户 × %d 局，预置 %d 个用户、%d 条记录，耗时 %.2f s，%.1f 局/秒，失败 %d 次%n",
+                clients, games, seedUsers, seedRecords, nanos / 1e9, (long) clients * games / (nanos / 1e9), load.failures.get());
+        System.out.printf("%-10s %8s %10s %10s %10s %10s %10s%n", "操作", "次数", "次/秒", "p50(ms)", "p99(ms)", "p999(ms)", "最长(ms)");
+        for (Map.Entry<String, LatencyHistogram> e : load.latency.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            System.out.printf("%-10s %8d %10.0f %10.3f %10.3f %10.3f %10.3f%n", e.getKey(), h.getCount(),
+                    h.getCount() / (nanos / 1e9), h.percentileNanos(0.50) / 1e6, h.percentileNanos(0.99) / 1e6,
+                    h.percentileNanos(0.999) / 1e6, h.getMaxMicros() / 1e3);
+        }
+        System.out.printf("users.dat %d → %d 字节（+%d），记录 %d → %d 字节（+%d，已压缩的旧段在宽限期后才删除，也计算在内）%n",
+                usersBefore, usersAfter, usersAfter - usersBefore,
+                recordsBefore, recordsAfter, recordsAfter - recordsBefore);
+        if (load.failures.get() > 0) System.exit(1);
+    }
+
+    // 直接写出预置文件，格式与 UserStore / 旧版 records.dat 相同；records.dat 在第一次打开时被导入为记录段
+    static void seed(File dir, int userCount, int recordCount, int levelCount) throws IOException {
+        String hash = SokobanGame.hashPassword(PASSWORD);
+        try (BufferedWriter out = Files.newBufferedWriter(new File(dir, "users.dat").toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < userCount; i++) {
+                out.write("seed" + i + ":" + hash + "\n");
+            }
+        }
+        Random random = new Random(1);
+        long time = System.currentTimeMillis() - recordCount * 1000L;
+        try (BufferedWriter out = Files.newBufferedWriter(new File(dir, "records.dat").toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < recordCount; i++) {
+                GameRecord r = new GameRecord("seed" + random.nextInt(Math.max(1, userCount)),
+                        random.nextInt(levelCount), 10 + random.nextInt(200), time + i * 1000L);
+                out.write(r.toLine() + "\n");
+            }
+        }
+    }
+
+    private static long directorySize(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                size += f.length();
+            }
+        }
+        return size;
+    }
+
+    // 所有模拟用户就绪后同时开始，返回全部完成所用的纳秒数
+    long run(int clients, int games) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(clients);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            String user = "load" + i;
+            Random random = new Random(i);
+            Thread t = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    session(user, games, random);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                    failures.incrementAndGet();
+                }
+            }, "sokoban-load-" + i);
+            threads.add(t);
+            t.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void session(String user, int games, Random random) throws IOException, InterruptedException {
+        // 与 LoginDialog 中的 registerUser / checkLogin 相同：先算哈希，再交给 UserStore
+        long t = System.nanoTime();
+        boolean registered = users.register(user, SokobanGame.hashPassword(PASSWORD));
+        record("register", t);
+        // 先输错一次密码再输对，每次校验各算一次登录
+        t = System.nanoTime();
+        boolean wrong = users.check(user, SokobanGame.hashPassword(PASSWORD + "x"));
+        record("login", t);
+        t = System.nanoTime();
+        boolean right = users.check(user, SokobanGame.hashPassword(PASSWORD));
+        record("login", t);
+        if (!registered || wrong || !right) failures.incrementAndGet();
+
+        GameState state = new GameState();
+        for (int g = 0; g < games; g++) {
+            int level = random.nextInt(solutions.length);
+            t = System.nanoTime();
+            state.load(levels[level]);
+            int moves = 0;
+            for (char c : solutions[level].toCharArray()) {
+                int dir = SokobanSolver.directionOf(c);
+                if (state.tryMove(SokobanSolver.DX[dir], SokobanSolver.DY[dir]) != GameState.BLOCKED) moves++;
+            }
+            record("play", t);
+            if (!state.isWon()) failures.incrementAndGet();
+            if (thinkMillis > 0) Thread.sleep(thinkMillis);
+
+            // saveGameRecord
+            t = System.nanoTime();
+            records.append(user, level, moves, System.currentTimeMillis());
+            record("save", t);
+
+            // showHistory 打开时读取的第一页
+            if (g % HISTORY_EVERY == HISTORY_EVERY - 1) {
+                t = System.nanoTime();
+                int rows = records.newest(user, 0, HistoryTableModel.PAGE).size();
+                record("history", t);
+                if (rows == 0) failures.incrementAndGet();
+            }
+        }
+    }
+
+    private void record(String op, long start) {
+        latency.get(op).record(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,168 @@
+package tom.jiafei;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import tom.jiafei.SokobanGame.TileType;
+
+// 每个用户一份的预写移动日志（journal/<用户名十六进制>.wal），整个文件映射到内存
+// 布局：32 字节文件头 + 关卡开始时的地图快照（每格一字节）+ 每步一字节的方向（0~3，撤销一步记为 UNDO）
+// 追加一步只是两次内存写入：先写方向字节，再更新步数；进程崩溃后页缓存中的数据仍然保留
+// 换关或重玩时把日志压缩为新快照，之前的步骤全部丢弃
+final class MoveJournal implements Closeable {
+    private static final int MAGIC = 0x534B4A4C; // "SKJL"
+    private static final int VERSION = 1;
+    private static final int INITIAL_SIZE = 64 * 1024;
+    static final int UNDO = 4;
+
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_VERSION = 4;
+    private static final int OFF_STATE = 8;
+    private static final int OFF_LEVEL = 12;
+    private static final int OFF_WIDTH = 16;
+    private static final int OFF_HEIGHT = 20;
+    private static final int OFF_COUNT = 24;
+    private static final int OFF_CRC = 28;
+    private static final int HEADER_SIZE = 32;
+
+    // 文件头中的状态：无可续玩进度 / 关卡进行中
+    private static final int EMPTY = 0;
+    private static final int ACTIVE = 1;
+
+    // 未完成的进度：关卡、开始时的地图和之后的每一步方向
+    static final class Progress {
+        final int level;
+        final int[][] map;
+        final byte[] moves;
+
+        Progress(int level, int[][] map, byte[] moves) {
+            this.level = level;
+            this.map = map;
+            this.moves = moves;
+        }
+    }
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int movesOffset;
+    private int count;
+
+    private MoveJournal(FileChannel channel) throws IOException {
+        this.channel = channel;
+        map(Math.max(INITIAL_SIZE, channel.size()));
+        if (buffer.getInt(OFF_MAGIC) != MAGIC || buffer.getInt(OFF_VERSION) != VERSION) {
+            buffer.putInt(OFF_STATE, EMPTY);
+            buffer.putInt(OFF_MAGIC, MAGIC);
+            buffer.putInt(OFF_VERSION, VERSION);
+        }
+    }
+
+    static MoveJournal open(String user) throws IOException {
+        File dir = new File("journal");
+        dir.mkdirs();
+        File file = new File(dir, fileName(user) + ".wal");
+        return new MoveJournal(FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    // 用户名的 UTF-8 十六进制，任何用户名都能安全地用作文件名
+    static String fileName(String user) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : user.getBytes(StandardCharsets.UTF_8)) {
+            name.append(String.format("%02x", b));
+        }
+        return name.toString();
+    }
+
+    private void map(long size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    // 上次未完成的进度，没有或已损坏时返回 null
+    Progress pending() {
+        if (buffer.getInt(OFF_STATE) != ACTIVE) return null;
+        int width = buffer.getInt(OFF_WIDTH);
+        int height = buffer.getInt(OFF_HEIGHT);
+        int moves = buffer.getInt(OFF_COUNT);
+        long cells = (long) width * height;
+        if (width <= 0 || height <= 0 || moves < 0 || HEADER_SIZE + cells + moves > buffer.capacity()) {
+            return null;
+        }
+
+        byte[] snapshot = new byte[(int) cells];
+        buffer.get(HEADER_SIZE, snapshot);
+        CRC32 crc = new CRC32();
+        crc.update(snapshot);
+        if ((int) crc.getValue() != buffer.getInt(OFF_CRC)) return null;
+
+        int[][] map = new int[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                map[y][x] = snapshot[y * width + x];
+            }
+        }
+        byte[] directions = new byte[moves];
+        buffer.get(HEADER_SIZE + (int) cells, directions);
+        return new Progress(buffer.getInt(OFF_LEVEL), map, directions);
+    }
+
+    // 换关或重玩：写入新快照并清空步骤
+    void compact(int level, int[][] map) throws IOException {
+        int height = map.length;
+        int width = 0;
+        for (int[] row : map) {
+            width = Math.max(width, row.length);
+        }
+        byte[] snapshot = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                snapshot[y * width + x] = (byte) (x < map[y].length ? map[y][x] : TileType.WALL.id);
+            }
+        }
+        if (HEADER_SIZE + snapshot.length + INITIAL_SIZE / 2 > buffer.capacity()) {
+            map(HEADER_SIZE + snapshot.length + INITIAL_SIZE);
+        }
+
+        // 先置为 EMPTY，写快照中途崩溃时不会读到半个快照
+        buffer.putInt(OFF_STATE, EMPTY);
+        buffer.put(HEADER_SIZE, snapshot);
+        CRC32 crc = new CRC32();
+        crc.update(snapshot);
+        buffer.putInt(OFF_LEVEL, level);
+        buffer.putInt(OFF_WIDTH, width);
+        buffer.putInt(OFF_HEIGHT, height);
+        buffer.putInt(OFF_COUNT, 0);
+        buffer.putInt(OFF_CRC, (int) crc.getValue());
+        buffer.putInt(OFF_STATE, ACTIVE);
+        buffer.force();
+
+        movesOffset = HEADER_SIZE + snapshot.length;
+        count = 0;
+    }
+
+    void append(int direction) throws IOException {
+        if (movesOffset == 0) return;
+        if (movesOffset + count >= buffer.capacity()) {
+            map(buffer.capacity() * 2L);
+        }
+        buffer.put(movesOffset + count, (byte) direction);
+        buffer.putInt(OFF_COUNT, ++count);
+    }
+
+    // 过关后没有需要续玩的进度
+    void finish() {
+        buffer.putInt(OFF_STATE, EMPTY);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,91 @@
+package tom.jiafei;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// 每次操作前的思考时间：处理按键时取 System.nanoTime，与上一次操作的差值连同出发格子写进预先分配的基本类型数组
+// 记一步只是两次数组写入，不装箱、不分配；关卡结束（过关或离开）时才按区域汇总，每个区域追加一行到 thinktime/think.log：
+// 用户|关卡|是否过关|时间戳|区域列,区域行|步数|总毫秒|最长毫秒|各桶计数（按毫秒数的 2 的幂分桶）
+final class MoveTimer {
+    // 区域为 REGION × REGION 个格子
+    static final int REGION = 3;
+    static final int BUCKETS = 25;
+    static final Path LOG = Paths.get("thinktime", "think.log");
+
+    private long[] nanos = new long[4096];
+    private int[] cells = new int[4096];
+    private int count;
+    private int width;
+    private long last;
+
+    // 新开一关，从现在开始计第一步的思考时间
+    void start(int width) {
+        this.width = width;
+        count = 0;
+        last = System.nanoTime();
+    }
+
+    int count() {
+        return count;
+    }
+
+    // now 为按键处理开始时的 System.nanoTime，(x, y) 为操作前玩家所在格
+    void stamp(long now, int x, int y) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+            cells = Arrays.copyOf(cells, count * 2);
+        }
+        nanos[count] = now - last;
+        cells[count] = y * width + x;
+        count++;
+        last = now;
+    }
+
+    static int bucket(long millis) {
+        return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(millis | 1));
+    }
+
+    // 按区域汇总后追加到日志并清空；没有操作时不写
+    void save(String user, int level, boolean solved, long timestamp) throws IOException {
+        if (count == 0) return;
+        int columns = (width + REGION - 1) / REGION;
+        int regions = 0;
+        for (int i = 0; i < count; i++) {
+            regions = Math.max(regions, cells[i] / width / REGION * columns + cells[i] % width / REGION + 1);
+        }
+        int[] moves = new int[regions];
+        long[] sum = new long[regions];
+        long[] max = new long[regions];
+        int[][] histogram = new int[regions][BUCKETS];
+        for (int i = 0; i < count; i++) {
+            int r = cells[i] / width / REGION * columns + cells[i] % width / REGION;
+            long millis = nanos[i] / 1_000_000;
+            moves[r]++;
+            sum[r] += millis;
+            max[r] = Math.max(max[r], millis);
+            histogram[r][bucket(millis)]++;
+        }
+        count = 0;
+
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < regions; r++) {
+            if (moves[r] == 0) continue;
+            sb.append(user).append('|').append(level).append('|').append(solved ? 1 : 0).append('|').append(timestamp)
+                    .append('|').append(r % columns).append(',').append(r / columns)
+                    .append('|').append(moves[r]).append('|').append(sum[r]).append('|').append(max[r]).append('|');
+            for (int b = 0; b < BUCKETS; b++) {
+                if (b > 0) sb.append(',');
+                sb.append(histogram[r][b]);
+            }
+            sb.append('\n');
+        }
+        Files.createDirectories(LOG.getParent());
+        Files.write(LOG, sb.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,63 @@
+package tom.jiafei;
+
+// 步数分布的可合并分位数草图：对数-线性分桶（与 HdrHistogram 同一思路）
+// 小于 128 的值精确计数，更大的值每个二进制数量级分 64 个桶，相对误差不超过 1/128
+// 桶数固定，内存与样本量无关；两个草图相加即得到合并后的分布
+final class MovesSketch {
+    private static final int LINEAR = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int BUCKETS = LINEAR + 25 * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long sum;
+
+    void add(int value) {
+        if (value < 0) value = 0;
+        counts[index(value)]++;
+        total++;
+        sum += value;
+    }
+
+    void merge(MovesSketch other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+    }
+
+    long count() {
+        return total;
+    }
+
+    double mean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    int quantile(double q) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return valueAt(i);
+        }
+        return valueAt(BUCKETS - 1);
+    }
+
+    private static int index(int value) {
+        if (value < LINEAR) return value;
+        int shift = (31 - Integer.numberOfLeadingZeros(value)) - 6;
+        return LINEAR + (shift - 1) * SUB_BUCKETS + ((value >> shift) - SUB_BUCKETS);
+    }
+
+    // 桶的中点
+    private static int valueAt(int index) {
+        if (index < LINEAR) return index;
+        int shift = (index - LINEAR) / SUB_BUCKETS + 1;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << shift;
+        return (int) Math.min(Integer.MAX_VALUE, lower + (1L << shift) / 2);
+    }
+}
@@ -0,0 +1,133 @@
+package tom.jiafei;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+// 鼠标操作的路径规划：点击走动与拖动推箱
+// 玩家可达区域只在推箱或换关后重新计算，单纯走动不会改变它
+final class PathPlanner {
+    private SokobanSolver layout;
+    private boolean[] occupied;
+    private int[] reach;
+    private int[] queue;
+    private int stamp;
+    private boolean dirty = true;
+
+    void reset(int[][] map) {
+        reset(map, null);
+    }
+
+    // analysed 为后台预先分析好的同一布局时直接使用
+    void reset(int[][] map, SokobanSolver analysed) {
+        if (layout == null || !layout.matchesLayout(map)) {
+            layout = analysed != null && analysed.matchesLayout(map) ? analysed : new SokobanSolver(map);
+            int size = layout.wall.length;
+            occupied = new boolean[size];
+            reach = new int[size];
+            queue = new int[size];
+        }
+        dirty = true;
+    }
+
+    // 箱子位置发生变化（推箱）后调用
+    void invalidate() {
+        dirty = true;
+    }
+
+    boolean isReachable(int[][] map, int x, int y) {
+        if (!inside(x, y)) return false;
+        ensureRegion(map);
+        return reach[y * layout.width + x] == stamp;
+    }
+
+    // 走到 (x, y) 的最短走法，不可达时返回 null
+    String walkTo(int[][] map, int x, int y) {
+        if (!isReachable(map, x, y)) return null;
+        return layout.walkPath(layout.playerCell(map), y * layout.width + x, occupied);
+    }
+
+    // 把 (boxX, boxY) 的箱子推到 (x, y) 的完整走法（其他箱子保持不动），无法做到时返回 null
+    String pushTo(int[][] map, int boxX, int boxY, int x, int y) {
+        if (!inside(boxX, boxY) || !inside(x, y) || !SokobanSolver.isBoxId(map[boxY][boxX])) return null;
+        ensureRegion(map);
+        int box = boxY * layout.width + boxX;
+        int goal = y * layout.width + x;
+        if (box == goal || !layout.open(goal) || occupied[goal]) return null;
+
+        // 状态：箱子位置 * 4 + 玩家可推动的方向
+        int[] prev = new int[layout.wall.length * 4];
+        Arrays.fill(prev, -2);
+        ArrayDeque<Integer> states = new ArrayDeque<>();
+        for (int dir = 0; dir < 4; dir++) {
+            int stand = layout.step(box, (dir + 2) & 3);
+            if (stand >= 0 && reach[stand] == stamp) {
+                prev[box * 4 + dir] = -1;
+                states.add(box * 4 + dir);
+            }
+        }
+
+        occupied[box] = false;
+        int found = -1;
+        while (!states.isEmpty() && found < 0) {
+            int state = states.poll();
+            int from = state / 4;
+            int next = layout.step(from, state % 4);
+            if (!layout.open(next) || occupied[next]) continue;
+            if (next == goal) {
+                found = state;
+                break;
+            }
+            occupied[next] = true;
+            stamp++;
+            layout.flood(from, occupied, reach, stamp, queue);
+            for (int dir = 0; dir < 4; dir++) {
+                int stand = layout.step(next, (dir + 2) & 3);
+                int s = next * 4 + dir;
+                if (stand >= 0 && reach[stand] == stamp && prev[s] == -2) {
+                    prev[s] = state;
+                    states.add(s);
+                }
+            }
+            occupied[next] = false;
+        }
+        occupied[box] = true;
+        // 可达区域已被搜索覆盖
+        dirty = true;
+        if (found < 0) return null;
+
+        ArrayDeque<Integer> pushes = new ArrayDeque<>();
+        for (int s = found; s >= 0; s = prev[s]) {
+            pushes.push(s);
+        }
+        StringBuilder moves = new StringBuilder();
+        int player = layout.playerCell(map);
+        int current = box;
+        for (int s : pushes) {
+            int dir = s % 4;
+            moves.append(layout.walkPath(player, layout.step(current, (dir + 2) & 3), occupied));
+            moves.append(Character.toUpperCase(SokobanSolver.MOVES[dir]));
+            occupied[current] = false;
+            player = current;
+            current = layout.step(current, dir);
+            occupied[current] = true;
+        }
+        occupied[current] = false;
+        occupied[box] = true;
+        return moves.toString();
+    }
+
+    private boolean inside(int x, int y) {
+        return layout != null && x >= 0 && y >= 0 && x < layout.width && y < layout.height;
+    }
+
+    private void ensureRegion(int[][] map) {
+        if (!dirty) return;
+        Arrays.fill(occupied, false);
+        for (int box : layout.boxCells(map)) {
+            occupied[box] = true;
+        }
+        stamp++;
+        layout.flood(layout.playerCell(map), occupied, reach, stamp, queue);
+        dirty = false;
+    }
+}
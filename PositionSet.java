@@ -0,0 +1,77 @@
+package tom.jiafei;
+
+import java.util.Arrays;
+
+// 局面哈希 → 第一次到达该局面时记下的值，开放寻址、线性探测
+// 键和值放在两个 long 数组里，查找和插入不创建对象；只有装到一半时才扩容
+// 哈希本身已经是均匀的随机数，直接取低位作槽号；0 用作空槽标记，值为 0 的键换成另一个常数
+final class PositionSet {
+    private static final long ZERO_KEY = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    PositionSet() {
+        this(1024);
+    }
+
+    PositionSet(int capacity) {
+        int n = Integer.highestOneBit(Math.max(16, capacity - 1) * 2);
+        keys = new long[n];
+        values = new long[n];
+    }
+
+    // 已有该局面时返回原来的值（不覆盖），否则记下 value 并返回 -1
+    long putIfAbsent(long key, long value) {
+        if (key == 0) key = ZERO_KEY;
+        int mask = keys.length - 1;
+        int slot = (int) key & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) grow();
+        return -1;
+    }
+
+    // 没有该局面时返回 -1
+    long get(long key) {
+        if (key == 0) key = ZERO_KEY;
+        int mask = keys.length - 1;
+        int slot = (int) key & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = (int) oldKeys[i] & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package tom.jiafei;
+
+import java.util.Arrays;
+
+// 剩余推动次数的下限：箱子与目标点按推箱距离（SokobanSolver.pushDistance）做最小代价匹配
+// 用带对偶势 u/v 的匈牙利算法；推动一个箱子只改变代价矩阵的一行，
+// 解除这个箱子的匹配后只为它增广一次（O(箱子数 × 目标数)），其余箱子的匹配和势保持不变
+// 目标比箱子多时补上代价为 0 的空行凑成方阵，这样每次增广后所有列都有匹配，对偶解仍然最优
+// 数组下标从 1 开始，0 号行/列是增广时的哨兵
+final class PushBound {
+    // 推不到某个目标点时按这个代价计入；最优匹配仍用到它说明已经无解
+    private static final int BIG = 1_000_000;
+
+    private final SokobanSolver layout;
+    private final int rows;
+    private final int cols;
+    // [箱子][目标]
+    private final int[][] cost;
+    // 格子上的箱子行号，没有箱子为 0
+    private final int[] rowOfCell;
+    private final int[] cellOfRow;
+    private final long[] u;
+    private final long[] v;
+    // 目标列当前匹配的箱子行
+    private final int[] owner;
+    private final long[] minv;
+    private final int[] way;
+    private final boolean[] used;
+    private int value;
+
+    PushBound(SokobanSolver layout, int[][] map) {
+        this.layout = layout;
+        int[] boxes = layout.boxCells(map);
+        cols = layout.targetCells.length;
+        rows = Math.max(boxes.length, cols);
+        cost = new int[rows + 1][cols + 1];
+        rowOfCell = new int[layout.wall.length];
+        cellOfRow = new int[rows + 1];
+        u = new long[rows + 1];
+        v = new long[cols + 1];
+        owner = new int[cols + 1];
+        minv = new long[cols + 1];
+        way = new int[cols + 1];
+        used = new boolean[cols + 1];
+        if (boxes.length > cols) {
+            // 箱子比目标多，关卡本身无解，不做匹配
+            value = -1;
+            return;
+        }
+        for (int i = 1; i <= rows; i++) {
+            if (i <= boxes.length) {
+                cellOfRow[i] = boxes[i - 1];
+                rowOfCell[boxes[i - 1]] = i;
+                fillRow(i);
+            }
+            augment(i);
+        }
+        value = total();
+    }
+
+    // 至少还需推动的次数；无法完成时为 SokobanSolver.INF，箱子多于目标时为 -1
+    int value() {
+        return value;
+    }
+
+    // 箱子从 (fromX, fromY) 被推到（或撤销退回到）(toX, toY)
+    void move(int fromX, int fromY, int toX, int toY) {
+        int from = fromY * layout.width + fromX;
+        int to = toY * layout.width + toX;
+        int row = rowOfCell[from];
+        if (row == 0 || value < 0) return;
+        rowOfCell[from] = 0;
+        rowOfCell[to] = row;
+        cellOfRow[row] = to;
+        fillRow(row);
+        for (int j = 1; j <= cols; j++) {
+            if (owner[j] == row) owner[j] = 0;
+        }
+        augment(row);
+        value = total();
+    }
+
+    private void fillRow(int row) {
+        int cell = cellOfRow[row];
+        for (int t = 0; t < cols; t++) {
+            cost[row][t + 1] = Math.min(layout.pushDistance[t][cell], BIG);
+        }
+    }
+
+    // 为未匹配的行 row 找一条最短增广路（Dijkstra 式），沿途调整对偶势
+    // 其余行的约束 cost - u - v >= 0 始终成立，row 自己的 u 在第一轮中被修正
+    private void augment(int row) {
+        owner[0] = row;
+        int col = 0;
+        Arrays.fill(minv, Long.MAX_VALUE);
+        Arrays.fill(used, false);
+        do {
+            used[col] = true;
+            int i = owner[col];
+            long delta = Long.MAX_VALUE;
+            int next = 0;
+            for (int j = 1; j <= cols; j++) {
+                if (used[j]) continue;
+                long reduced = cost[i][j] - u[i] - v[j];
+                if (reduced < minv[j]) {
+                    minv[j] = reduced;
+                    way[j] = col;
+                }
+                if (minv[j] < delta) {
+                    delta = minv[j];
+                    next = j;
+                }
+            }
+            for (int j = 0; j <= cols; j++) {
+                if (used[j]) {
+                    u[owner[j]] += delta;
+                    v[j] -= delta;
+                } else {
+                    minv[j] -= delta;
+                }
+            }
+            col = next;
+        } while (owner[col] != 0);
+        // 沿增广路翻转匹配
+        do {
+            int prev = way[col];
+            owner[col] = owner[prev];
+            col = prev;
+        } while (col != 0);
+    }
+
+    private int total() {
+        long sum = 0;
+        for (int j = 1; j <= cols; j++) {
+            if (owner[j] != 0) sum += cost[owner[j]][j];
+        }
+        return sum >= BIG ? SokobanSolver.INF : (int) sum;
+    }
+}
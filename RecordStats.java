@@ -0,0 +1,308 @@
+package tom.jiafei;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// 游戏记录的流式统计：文本段按块内存映射、多线程并行扫描，逐字节解析 user|level|moves|timestamp，列式段直接按列累加
+// 每块得到的部分结果（分位数草图、计数）再合并，内存只与关卡数和用户数有关，与文件大小无关
+// 命令行：java -cp sokoban.jar tom.jiafei.RecordStats [记录目录或旧版 records.dat] [线程数]
+final class RecordStats {
+    private static final long MIN_CHUNK = 1L << 20;
+    private static final long MAX_CHUNK = 64L << 20;
+    // 块末尾多映射的字节，用来读完跨块的最后一行
+    private static final int MAX_LINE = 4096;
+    private static final int MAX_LEVEL = 1 << 20;
+
+    static final class LevelStats {
+        final MovesSketch moves = new MovesSketch();
+    }
+
+    static final class UserStats {
+        final String name;
+        long plays;
+        final BitSet levels = new BitSet();
+
+        UserStats(String name) {
+            this.name = name;
+        }
+    }
+
+    final SortedMap<Integer, LevelStats> levels = new TreeMap<>();
+    final Map<String, UserStats> users = new HashMap<>();
+    long lines;
+    long malformed;
+
+    static RecordStats scan(Path file, int threads) throws IOException {
+        return scan(Collections.singletonList(file.toFile()), threads);
+    }
+
+    static RecordStats scan(RecordStore store, int threads) throws IOException {
+        return store.withSegments(segments -> scan(segments, threads));
+    }
+
+    // 文本段按块并行扫描，列式段每段一个任务
+    private static RecordStats scan(List<File> segments, int threads) throws IOException {
+        List<FileChannel> channels = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<RecordStats>> parts = new ArrayList<>();
+            for (File segment : segments) {
+                if (RecordStore.isColumnar(segment)) {
+                    parts.add(pool.submit(() -> scanColumns(segment)));
+                    continue;
+                }
+                FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ);
+                channels.add(channel);
+                long size = channel.size();
+                // 每个线程分到若干块，便于负载均衡
+                long chunkSize = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, size / (Math.max(1, threads) * 4L)));
+                for (long start = 0; start < size; start += chunkSize) {
+                    long from = start;
+                    long to = Math.min(size, start + chunkSize);
+                    parts.add(pool.submit(() -> scanChunk(channel, from, to, size)));
+                }
+            }
+            RecordStats total = new RecordStats();
+            for (Future<RecordStats> part : parts) {
+                total.merge(part.get());
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("统计被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("统计失败", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    private static RecordStats scanColumns(File segment) throws IOException {
+        ColumnSegment columns = ColumnSegment.read(segment);
+        RecordStats stats = new RecordStats();
+        UserStats[] byUser = new UserStats[columns.users.length];
+        LevelStats[] byLevel = new LevelStats[16];
+        for (int i = 0; i < columns.size(); i++) {
+            stats.lines++;
+            int level = columns.levels[i];
+            if (level < 0 || level >= MAX_LEVEL || columns.moves[i] < 0) {
+                stats.malformed++;
+                continue;
+            }
+            if (level >= byLevel.length) {
+                byLevel = Arrays.copyOf(byLevel, Math.max(level + 1, byLevel.length * 2));
+            }
+            if (byLevel[level] == null) byLevel[level] = new LevelStats();
+            byLevel[level].moves.add(columns.moves[i]);
+            int u = columns.userIndex[i];
+            if (byUser[u] == null) {
+                byUser[u] = new UserStats(columns.users[u]);
+                stats.users.put(byUser[u].name, byUser[u]);
+            }
+            byUser[u].plays++;
+            byUser[u].levels.set(level);
+        }
+        for (int level = 0; level < byLevel.length; level++) {
+            if (byLevel[level] != null) stats.levels.put(level, byLevel[level]);
+        }
+        return stats;
+    }
+
+    // 处理首字节落在 [start, end) 内的所有行
+    private static RecordStats scanChunk(FileChannel channel, long start, long end, long size) throws IOException {
+        long mapStart = start == 0 ? 0 : start - 1;
+        long mapEnd = Math.min(size, end + MAX_LINE);
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        int limit = (int) (end - mapStart);
+        int pos = 0;
+        // 不在文件开头时，跳过属于上一块的半行
+        if (start > 0) {
+            while (pos < buf.limit() && buf.get(pos) != '\n') pos++;
+            pos++;
+        }
+
+        RecordStats stats = new RecordStats();
+        UserTable table = new UserTable(stats.users);
+        LevelStats[] byLevel = new LevelStats[16];
+        int[] fields = new int[4];
+        while (pos < limit) {
+            int lineEnd = pos;
+            int field = 0;
+            while (lineEnd < buf.limit() && buf.get(lineEnd) != '\n') {
+                if (buf.get(lineEnd) == '|' && field < fields.length) fields[field++] = lineEnd;
+                lineEnd++;
+            }
+            // 没有换行符的末尾半行可能是别的进程正在追加的记录，与 RecordStore.readBackward 一样不读
+            if (lineEnd == buf.limit()) break;
+            int contentEnd = lineEnd > pos && buf.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > pos) {
+                stats.lines++;
+                int level = field == 3 ? parseInt(buf, fields[0] + 1, fields[1]) : -1;
+                int moves = field == 3 ? parseInt(buf, fields[1] + 1, fields[2]) : -1;
+                if (level < 0 || level >= MAX_LEVEL || moves < 0 || fields[0] == pos) {
+                    stats.malformed++;
+                } else {
+                    if (level >= byLevel.length) {
+                        byLevel = Arrays.copyOf(byLevel, Math.max(level + 1, byLevel.length * 2));
+                    }
+                    if (byLevel[level] == null) byLevel[level] = new LevelStats();
+                    byLevel[level].moves.add(moves);
+                    UserStats user = table.get(buf, pos, fields[0]);
+                    user.plays++;
+                    user.levels.set(level);
+                }
+            }
+            pos = lineEnd + 1;
+        }
+        for (int level = 0; level < byLevel.length; level++) {
+            if (byLevel[level] != null) stats.levels.put(level, byLevel[level]);
+        }
+        return stats;
+    }
+
+    // 非负十进制整数，格式不对时返回 -1
+    private static int parseInt(MappedByteBuffer buf, int from, int to) {
+        if (from >= to || to - from > 9) return -1;
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private void merge(RecordStats other) {
+        lines += other.lines;
+        malformed += other.malformed;
+        for (Map.Entry<Integer, LevelStats> e : other.levels.entrySet()) {
+            levels.computeIfAbsent(e.getKey(), k -> new LevelStats()).moves.merge(e.getValue().moves);
+        }
+        for (UserStats u : other.users.values()) {
+            UserStats mine = users.computeIfAbsent(u.name, UserStats::new);
+            mine.plays += u.plays;
+            mine.levels.or(u.levels);
+        }
+    }
+
+    String report(int levelCount) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("记录 %d 条（无效 %d 条）%n%n", lines, malformed));
+        sb.append(String.format("%-6s %8s %8s %8s %8s%n", "关卡", "次数", "平均步数", "中位数", "P95"));
+        for (Map.Entry<Integer, LevelStats> e : levels.entrySet()) {
+            MovesSketch m = e.getValue().moves;
+            sb.append(String.format("%-8d %8d %10.1f %9d %8d%n",
+                    e.getKey() + 1, m.count(), m.mean(), m.quantile(0.5), m.quantile(0.95)));
+        }
+
+        sb.append(String.format("%n%-12s %8s %10s %8s%n", "用户", "通关次数", "完成关卡", "完成率"));
+        List<UserStats> sorted = new ArrayList<>(users.values());
+        sorted.sort(Comparator.comparing(u -> u.name));
+        for (UserStats u : sorted) {
+            int done = u.levels.get(0, Math.max(levelCount, 0)).cardinality();
+            sb.append(String.format("%-14s %8d %8d/%d %8.1f%%%n",
+                    u.name, u.plays, done, levelCount, levelCount == 0 ? 0.0 : 100.0 * done / levelCount));
+        }
+        return sb.toString();
+    }
+
+    // 按用户名字节查找 UserStats 的开放寻址表，避免每行都解码出一个 String
+    private static final class UserTable {
+        private final Map<String, UserStats> users;
+        private byte[][] keys = new byte[64][];
+        private int[] hashes = new int[64];
+        private UserStats[] values = new UserStats[64];
+        private int size;
+
+        UserTable(Map<String, UserStats> users) {
+            this.users = users;
+        }
+
+        UserStats get(MappedByteBuffer buf, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + buf.get(i);
+            }
+            int mask = keys.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                byte[] key = keys[slot];
+                if (key == null) {
+                    byte[] copy = new byte[to - from];
+                    buf.get(from, copy);
+                    UserStats stats = new UserStats(new String(copy, StandardCharsets.UTF_8));
+                    users.put(stats.name, stats);
+                    insert(copy, hash, stats);
+                    return stats;
+                }
+                if (hashes[slot] == hash && matches(key, buf, from, to)) {
+                    return values[slot];
+                }
+            }
+        }
+
+        private static boolean matches(byte[] key, MappedByteBuffer buf, int from, int to) {
+            if (key.length != to - from) return false;
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buf.get(from + i)) return false;
+            }
+            return true;
+        }
+
+        private void insert(byte[] key, int hash, UserStats value) {
+            if (++size * 2 > keys.length) {
+                byte[][] oldKeys = keys;
+                int[] oldHashes = hashes;
+                UserStats[] oldValues = values;
+                keys = new byte[oldKeys.length * 2][];
+                hashes = new int[oldKeys.length * 2];
+                values = new UserStats[oldKeys.length * 2];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) put(oldKeys[i], oldHashes[i], oldValues[i]);
+                }
+            }
+            put(key, hash, value);
+        }
+
+        private void put(byte[] key, int hash, UserStats value) {
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while (keys[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = key;
+            hashes[slot] = hash;
+            values[slot] = value;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "records");
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        RecordStats stats;
+        try {
+            stats = Files.isDirectory(file)
+                    ? scan(new RecordStore(file.toString(), null), threads)
+                    : scan(file, threads);
+        } catch (NoSuchFileException e) {
+            System.err.println("找不到记录文件: " + file);
+            return;
+        }
+        System.out.print(stats.report(SokobanGame.getLevels().length));
+        System.out.printf("%n耗时 %.1f ms%n", (System.nanoTime() - start) / 1e6);
+    }
+}
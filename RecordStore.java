@@ -0,0 +1,423 @@
+package tom.jiafei;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+// 游戏记录存储：一个目录下的若干段 + MANIFEST（按从旧到新列出段名）
+// 最后一段是正在追加的文本段（每行 user|level|moves|timestamp），超过 SEGMENT_BYTES 就封存并换新段
+// 封存的文本段由后台线程压缩成列式段（ColumnSegment），总大小超过 MAX_BYTES 时丢弃最旧的压缩段
+// 旧版的单文件 records.dat 在第一次打开时作为最旧的一段并入
+// 可被多个游戏进程同时使用：追加、换段和改清单都在 JournaledWriter 的跨进程写锁内进行，
+// 清单整体改名替换，读取方不加锁；移出清单的文件过了宽限期才删除，读到旧清单的读者仍能打开它们
+// 同一进程内每个目录只应有一个实例（FileLock 属于整个进程）
+final class RecordStore {
+    private static final GameMetrics METRICS = GameMetrics.get();
+    private static final String MANIFEST = "MANIFEST";
+    private static final String MANIFEST_HEADER = "SKRM 2";
+    private static final String LOCK = "LOCK";
+    private static final String JOURNAL = "JOURNAL";
+    private static final String TEXT = ".log";
+    private static final String COLUMNS = ".col";
+    private static final String CLAIM = ".claim";
+
+    static final long SEGMENT_BYTES = Long.getLong("sokoban.records.segmentBytes", 4L << 20);
+    static final long MAX_BYTES = Long.getLong("sokoban.records.maxBytes", 256L << 20);
+    // 压缩时每个列式段最多容纳的记录数，旧版大文件会被拆成多段
+    private static final int RECORDS_PER_COLUMN_SEGMENT = 200_000;
+    // 倒着读文本段时每次读入的块大小
+    private static final int BLOCK = 64 * 1024;
+    // 移出清单的文件、没有登记的临时文件，超过这个时间才删除
+    private static final long GRACE_MILLIS = 10 * 60 * 1000L;
+
+    // 读取期间拿到的段快照
+    interface SegmentReader<T> {
+        T read(List<File> segments) throws IOException;
+    }
+
+    private static final class Manifest {
+        final List<String> segments = new ArrayList<>();
+        // 已移出清单、等待删除的文件 → 移出时间
+        final Map<String, Long> retired = new LinkedHashMap<>();
+        int next;
+
+        String active() {
+            return segments.get(segments.size() - 1);
+        }
+
+        String allocate(String suffix) {
+            return String.format("seg-%08d%s", next++, suffix);
+        }
+    }
+
+    private final File dir;
+    private final File legacy;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sokoban-compactor");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private JournaledWriter writer;
+    // 本进程最近一次看到的已封存段总大小，只用于指标
+    private volatile long sealedBytes;
+
+    RecordStore(String dir, String legacy) {
+        this.dir = new File(dir);
+        this.legacy = legacy == null ? null : new File(legacy);
+    }
+
+    static boolean isColumnar(File segment) {
+        return segment.getName().endsWith(COLUMNS);
+    }
+
+    private synchronized JournaledWriter open() throws IOException {
+        if (writer != null) return writer;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录 " + dir);
+        }
+        JournaledWriter w = new JournaledWriter(file(LOCK), file(JOURNAL));
+        List<String> sealed = w.write(() -> {
+            Manifest m = readManifest();
+            String imported = null;
+            if (legacy != null && legacy.isFile()) {
+                String name = m.allocate(TEXT);
+                imported = name;
+                Files.move(legacy.toPath(), file(name).toPath(), StandardCopyOption.ATOMIC_MOVE);
+                m.segments.add(0, name);
+            }
+            // 导入的旧文件只作为已封存段，交给后台压缩，新记录写进新段
+            if (m.segments.isEmpty() || !m.active().endsWith(TEXT) || m.active().equals(imported)) {
+                m.segments.add(m.allocate(TEXT));
+            }
+            cleanup(m);
+            writeManifest(m);
+            updateSealedBytes(m);
+            return m.segments.subList(0, m.segments.size() - 1);
+        });
+        writer = w;
+        for (String name : sealed) {
+            if (name.endsWith(TEXT)) scheduleCompaction(name);
+        }
+        return w;
+    }
+
+    void append(String user, int level, int moves, long timestamp) throws IOException {
+        long start = System.nanoTime();
+        GameEvents.FileOperation event = new GameEvents.FileOperation();
+        event.begin();
+        byte[] line = String.format("%s|%d|%d|%d%n", user, level, moves, timestamp).getBytes();
+        JournaledWriter w = open();
+        File active = w.write(() -> {
+            Manifest m = readManifest();
+            File f = file(m.active());
+            w.append(f, line);
+            // 超过大小就封存，之后的写入进新段
+            if (f.length() >= SEGMENT_BYTES) {
+                String sealed = m.active();
+                m.segments.add(m.allocate(TEXT));
+                writeManifest(m);
+                sealedBytes += f.length();
+                scheduleCompaction(sealed);
+            }
+            return f;
+        });
+        METRICS.recordsWrite.record(System.nanoTime() - start);
+        METRICS.recordsBytesWritten.add(line.length);
+        METRICS.recordsFileSize = sealedBytes + active.length();
+        GameEvents.fileOperation(event, active.getPath(), "append", line.length);
+    }
+
+    // 指定用户从新到旧的记录，跳过前 skip 条，最多 limit 条
+    List<GameRecord> newest(String user, int skip, int limit) throws IOException {
+        List<GameRecord> page = new ArrayList<>(limit);
+        int[] seen = {0};
+        scanBackward(user, r -> {
+            if (seen[0]++ >= skip) page.add(r);
+            return page.size() < limit;
+        });
+        return page;
+    }
+
+    // 从新到旧遍历记录（user 为 null 时不过滤），visitor 返回 false 时停止
+    // 文本段从文件末尾按块倒着读，只读到需要的位置；不含该用户的压缩段读完字典就跳过
+    void scanBackward(String user, Predicate<GameRecord> visitor) throws IOException {
+        long start = System.nanoTime();
+        GameEvents.FileOperation event = new GameEvents.FileOperation();
+        event.begin();
+        long[] bytes = {0};
+        withSegments(files -> {
+            for (int s = files.size() - 1; s >= 0; s--) {
+                File f = files.get(s);
+                if (isColumnar(f)) {
+                    ColumnSegment columns = ColumnSegment.read(f, user);
+                    if (columns == null) continue;
+                    bytes[0] += f.length();
+                    int only = user == null ? -1 : columns.indexOf(user);
+                    for (int i = columns.size() - 1; i >= 0; i--) {
+                        if (only >= 0 && columns.userIndex[i] != only) continue;
+                        if (!visitor.test(columns.get(i))) return null;
+                    }
+                } else if (!readBackward(f, user, visitor, bytes)) {
+                    return null;
+                }
+            }
+            return null;
+        });
+        METRICS.recordsRead.record(System.nanoTime() - start);
+        METRICS.recordsBytesRead.add(bytes[0]);
+        GameEvents.fileOperation(event, dir.getPath(), "read", bytes[0]);
+    }
+
+    private static boolean readBackward(File f, String user, Predicate<GameRecord> visitor, long[] bytes) throws IOException {
+        byte[] prefix = user == null ? null : (user + "|").getBytes();
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            long pos = raf.length();
+            byte[] buf = new byte[BLOCK * 2];
+            byte[] carry = new byte[BLOCK];
+            int carryLength = 0;
+            // 最后一个换行符之后的半行可能是别的进程正在追加的记录，不读
+            boolean trailing = true;
+            while (pos > 0) {
+                int n = (int) Math.min(BLOCK, pos);
+                pos -= n;
+                // 缓冲区 = 新读入的块 + 上一块开头那半行
+                if (buf.length < n + carryLength) {
+                    buf = new byte[(n + carryLength) * 2];
+                }
+                System.arraycopy(carry, 0, buf, n, carryLength);
+                raf.seek(pos);
+                raf.readFully(buf, 0, n);
+                bytes[0] += n;
+
+                int lineEnd = n + carryLength;
+                int i = lineEnd - 1;
+                if (trailing) {
+                    while (i >= 0 && buf[i] != '\n') i--;
+                    if (i < 0) continue;
+                    trailing = false;
+                    lineEnd = i--;
+                }
+                for (; i >= 0; i--) {
+                    if (buf[i] != '\n') continue;
+                    if (!emit(buf, i + 1, lineEnd, prefix, visitor)) return false;
+                    lineEnd = i;
+                }
+                if (pos == 0) {
+                    return emit(buf, 0, lineEnd, prefix, visitor);
+                }
+                if (carry.length < lineEnd) {
+                    carry = new byte[lineEnd * 2];
+                }
+                System.arraycopy(buf, 0, carry, 0, lineEnd);
+                carryLength = lineEnd;
+            }
+        }
+        return true;
+    }
+
+    private static boolean emit(byte[] buf, int from, int to, byte[] prefix, Predicate<GameRecord> visitor) {
+        if (prefix != null) {
+            if (to - from <= prefix.length) return true;
+            for (int i = 0; i < prefix.length; i++) {
+                if (buf[from + i] != prefix[i]) return true;
+            }
+        }
+        GameRecord r = to > from ? GameRecord.parse(new String(buf, from, to - from)) : null;
+        return r == null || visitor.test(r);
+    }
+
+    <T> T withSegments(SegmentReader<T> reader) throws IOException {
+        open();
+        List<File> files = new ArrayList<>();
+        for (String name : readManifest().segments) {
+            files.add(file(name));
+        }
+        return reader.read(files);
+    }
+
+    // 等待已排队的压缩完成
+    void awaitCompaction() throws IOException {
+        try {
+            compactor.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void scheduleCompaction(String name) {
+        compactor.execute(() -> {
+            try {
+                compact(name);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // 把一个封存的文本段改写成一个或多个列式段，再在写锁内替换清单中的条目
+    // 先创建认领文件，多个进程同时打开时只有一个去压缩
+    private void compact(String name) throws IOException {
+        File claim = file(name + CLAIM);
+        try {
+            Files.createFile(claim.toPath());
+        } catch (FileAlreadyExistsException e) {
+            return;
+        }
+        try {
+            if (!readManifest().segments.contains(name)) return;
+            File source = file(name);
+            List<String> pieces = new ArrayList<>();
+            List<GameRecord> batch = new ArrayList<>();
+            try (BufferedReader br = new BufferedReader(new FileReader(source), 1 << 16)) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    GameRecord r = GameRecord.parse(line);
+                    if (r == null) continue;
+                    batch.add(r);
+                    if (batch.size() == RECORDS_PER_COLUMN_SEGMENT) {
+                        pieces.add(writeColumns(batch));
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                pieces.add(writeColumns(batch));
+            }
+
+            writer.write(() -> {
+                Manifest m = readManifest();
+                int index = m.segments.indexOf(name);
+                if (index < 0) {
+                    for (String piece : pieces) {
+                        file(piece).delete();
+                    }
+                    return null;
+                }
+                long now = System.currentTimeMillis();
+                m.segments.remove(index);
+                m.segments.addAll(index, pieces);
+                m.retired.put(name, now);
+                enforceRetention(m, now);
+                cleanup(m);
+                writeManifest(m);
+                updateSealedBytes(m);
+                return null;
+            });
+        } finally {
+            claim.delete();
+        }
+    }
+
+    private String writeColumns(List<GameRecord> batch) throws IOException {
+        String name = writer.write(() -> {
+            Manifest m = readManifest();
+            String allocated = m.allocate(COLUMNS);
+            writeManifest(m);
+            return allocated;
+        });
+        ColumnSegment.write(file(name), batch);
+        return name;
+    }
+
+    // 总大小超限时从最旧的压缩段开始丢弃，至少保留当前文本段
+    private void enforceRetention(Manifest m, long now) {
+        long total = 0;
+        for (String name : m.segments) {
+            total += file(name).length();
+        }
+        while (total > MAX_BYTES && m.segments.size() > 1 && m.segments.get(0).endsWith(COLUMNS)) {
+            String oldest = m.segments.remove(0);
+            total -= file(oldest).length();
+            m.retired.put(oldest, now);
+        }
+    }
+
+    // 删除宽限期已过的退役文件，以及没有登记的遗留文件（压缩中途退出、旧的认领文件）
+    private void cleanup(Manifest m) {
+        long now = System.currentTimeMillis();
+        m.retired.entrySet().removeIf(e -> now - e.getValue() > GRACE_MILLIS
+                && (file(e.getKey()).delete() || !file(e.getKey()).exists()));
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            String name = f.getName();
+            if (name.equals(MANIFEST) || name.equals(LOCK) || name.equals(JOURNAL)) continue;
+            if (m.segments.contains(name) || m.retired.containsKey(name)) continue;
+            if (now - f.lastModified() > GRACE_MILLIS) f.delete();
+        }
+    }
+
+    private void updateSealedBytes(Manifest m) {
+        long total = 0;
+        for (String name : m.segments.subList(0, m.segments.size() - 1)) {
+            total += file(name).length();
+        }
+        sealedBytes = total;
+        METRICS.recordsFileSize = total + file(m.active()).length();
+    }
+
+    // 不加锁也能读：清单总是整体改名替换
+    private Manifest readManifest() throws IOException {
+        Manifest m = new Manifest();
+        File manifest = file(MANIFEST);
+        if (!manifest.exists()) return m;
+        List<String> lines = Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).startsWith("SKRM ")) {
+            throw new IOException("记录清单格式错误: " + manifest);
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.startsWith("next ")) {
+                m.next = Math.max(m.next, Integer.parseInt(line.substring(5)));
+            } else if (line.startsWith("retired ")) {
+                String[] parts = line.split(" ");
+                m.retired.put(parts[1], Long.parseLong(parts[2]));
+            } else if (!line.isEmpty()) {
+                m.segments.add(line);
+                m.next = Math.max(m.next, idOf(line) + 1);
+            }
+        }
+        return m;
+    }
+
+    // 只在写锁内调用
+    private void writeManifest(Manifest m) throws IOException {
+        File tmp = file(MANIFEST + ".tmp");
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            pw.println(MANIFEST_HEADER);
+            pw.println("next " + m.next);
+            for (String name : m.segments) {
+                pw.println(name);
+            }
+            for (Map.Entry<String, Long> e : m.retired.entrySet()) {
+                pw.println("retired " + e.getKey() + " " + e.getValue());
+            }
+        }
+        Files.move(tmp.toPath(), file(MANIFEST).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int idOf(String name) {
+        try {
+            return Integer.parseInt(name.substring(4, name.indexOf('.')));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private File file(String name) {
+        return new File(dir, name);
+    }
+}
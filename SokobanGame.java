@@ -6,13 +6,11 @@ import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.security.MessageDigest;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class SokobanGame extends JFrame {
     // 游戏元素枚举
-    private enum TileType {
+    enum TileType {
         WALL(1, "墙", Color.GRAY, true),
         FLOOR(0, "地板", new Color(240, 240, 240), false),
         PLAYER(2, "玩家", Color.BLUE, false),
@@ -41,42 +39,143 @@ public class SokobanGame extends JFrame {
         }
     }
 
+    // 启动计时起点：排在最前面，先于下面创建存储等静态初始化
+    private static final long MAIN_START = System.nanoTime();
+
     // 游戏配置
-    private static final int TILE_SIZE = 60;
+    static final int TILE_SIZE = 60;
     private static final int INFO_PANEL_HEIGHT = 80;
     private static final Font INFO_FONT = new Font("微软雅黑", Font.BOLD, 16);
+    private static final GameMetrics METRICS = GameMetrics.get();
+    // 同一进程内的所有窗口共用；多个进程之间由存储自己加锁协调
+    private static final RecordStore RECORDS = new RecordStore("records", "records.dat");
+    private static final UserStore USERS = new UserStore("users.dat");
+    private static final int LEVEL_COUNT = getLevels().length;
 
     // 游戏状态
     private int currentLevel = 0;
     private int moveCount = 0;
-    private int[][] currentMap;
-    private Point playerPos = new Point();
-    private int boxesLeft = 0;
+    private final GameState state = new GameState();
     private String currentUser;
+    private MoveJournal journal;
+    // 观战者跟随的移动广播，打不开时为 null
+    private SpectatorFeed feed;
+
+    // 局面重复检测：哈希 → 第一次到达时的步数（高 32 位）和推动次数（低 32 位）
+    private final PositionSet visited = new PositionSet();
+    private final MoveTimer moveTimer = new MoveTimer();
+    // 当前局面第一次出现时的步数，即去掉绕圈后的步数
+    private int effectiveMoves;
+    // 回到了之前到过的局面且中间推过箱子；提醒文字在绘制时才拼，走棋时不分配
+    private boolean repeated;
+    // 剩余推动次数下限，推箱后增量更新
+    private PushBound pushBound;
+
+    // 提示
+    private final HintService hintService = new HintService(this::onHintReady);
+    private String hintMoves;
+    // 本关所有玩家的通关走法，走在已知解法上时直接用它给提示
+    private SolutionLibrary solutions = new SolutionLibrary();
+    private SolutionLibrary.Cursor solutionCursor = solutions.cursor();
+    private boolean hintVisible;
+
+    // 鼠标寻路
+    private final PathPlanner pathPlanner = new PathPlanner();
+    private Point dragStart;
 
     // 资源缓存
-    private Map<TileType, Image> tileImages = new HashMap<>();
-    private Image playerImg, boxImg, targetImg;
+    private BoardRenderer renderer;
+    private final LevelPrefetcher prefetcher = new LevelPrefetcher(level -> getLevels()[level], this::onLevelPrepared);
+    // 当前关卡的静态背景层，准备好之前为 null
+    private BufferedImage background;
+    private long constructedAt;
+    private boolean painted;
 
     // UI组件
     private JPanel gamePanel;
     private JLabel levelLabel;
     private JLabel movesLabel;
     private JLabel boxesLabel;
+    private JLabel boundLabel;
     private JButton restartButton;
     private JButton prevLevelButton;
     private JButton nextLevelButton;
 
+    // 界面刷新：GameState 的变化先累积在 pendingChanges 中，每帧最多刷新一次
+    private static final int FRAME_MILLIS = 16;
+    private final Timer uiTimer = new Timer(FRAME_MILLIS, e -> updateUI());
+    private int pendingChanges;
+    // 界面上正在显示的值
+    private int shownLevel = -1;
+    private int shownMoves = -1;
+    private int shownEffectiveMoves = -1;
+    private int shownBoxes = -1;
+    private int shownBound = Integer.MIN_VALUE;
+
     public SokobanGame(String username) {
         this.currentUser = username;
+        uiTimer.setRepeats(false);
+        state.listener = this::onStateChanged;
+        // 与 login shown 之差是玩家输入账号密码的时间
+        StartupTimer.mark("logged in");
+        long start = System.nanoTime();
         initUI();
-        loadResources();
+        StartupTimer.record("frame", start);
+        renderer = new BoardRenderer(() -> gamePanel.repaint());
+
+        // 换关会覆盖日志，先取出上次未完成的进度
+        MoveJournal.Progress progress = null;
+        try {
+            journal = MoveJournal.open(username);
+            progress = journal.pending();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            feed = SpectatorFeed.publish(username);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        start = System.nanoTime();
         loadLevel(currentLevel);
+        StartupTimer.record("level", start);
+        constructedAt = System.nanoTime();
+
+        if (progress != null && progress.level < getLevelCount()
+                && (progress.level > 0 || progress.moves.length > 0)) {
+            MoveJournal.Progress resumable = progress;
+            SwingUtilities.invokeLater(() -> offerResume(resumable));
+        }
+    }
+
+    private void offerResume(MoveJournal.Progress progress) {
+        int option = JOptionPane.showConfirmDialog(this,
+                "检测到未完成的进度（关卡 " + (progress.level + 1) + "，" + progress.moves.length + " 步），是否继续？",
+                "继续游戏", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+        if (option != JOptionPane.YES_OPTION) return;
+
+        startLevel(progress.level, progress.map, prefetcher.take(progress.level));
+        prefetcher.around(progress.level, getLevelCount());
+        for (byte dir : progress.moves) {
+            if (dir == MoveJournal.UNDO) {
+                if (undoMovePlayer()) moveCount--;
+            } else if (tryMovePlayer(SokobanSolver.DX[dir], SokobanSolver.DY[dir])) {
+                moveCount++;
+            }
+        }
+        resetHint();
     }
 
     private void initUI() {
         setTitle("增强版推箱子游戏 - 用户: " + currentUser);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                saveThinkTimes(false);
+            }
+        });
         setLayout(new BorderLayout());
 
         // 游戏主面板
@@ -95,6 +194,29 @@ public class SokobanGame extends JFrame {
                 handleKeyPress(e);
             }
         });
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStart = cellAt(e.getPoint());
+                gamePanel.requestFocusInWindow();
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                handleMouseRelease(e.getPoint());
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                Point cell = cellAt(e.getPoint());
+                boolean clickable = cell != null && (isBoxAt(cell)
+                        || pathPlanner.isReachable(state.map, cell.x, cell.y));
+                gamePanel.setCursor(Cursor.getPredefinedCursor(
+                        clickable ? Cursor.HAND_CURSOR : Cursor.DEFAULT_CURSOR));
+            }
+        };
+        gamePanel.addMouseListener(mouseHandler);
+        gamePanel.addMouseMotionListener(mouseHandler);
         add(gamePanel, BorderLayout.CENTER);
 
         // 信息面板
@@ -105,6 +227,7 @@ public class SokobanGame extends JFrame {
         levelLabel = createInfoLabel("关卡: 1");
         movesLabel = createInfoLabel("步数: 0");
         boxesLabel = createInfoLabel("剩余箱子: 0");
+        boundLabel = createInfoLabel("至少还需推: 0");
 
         restartButton = new JButton("重玩");
         restartButton.addActionListener(e -> loadLevel(currentLevel));
@@ -122,6 +245,7 @@ public class SokobanGame extends JFrame {
         infoPanel.add(levelLabel);
         infoPanel.add(movesLabel);
         infoPanel.add(boxesLabel);
+        infoPanel.add(boundLabel);
         infoPanel.add(restartButton);
         infoPanel.add(prevLevelButton);
         infoPanel.add(nextLevelButton);
@@ -132,6 +256,22 @@ public class SokobanGame extends JFrame {
         JMenuBar menuBar = new JMenuBar();
 
         JMenu gameMenu = new JMenu("游戏");
+        JMenuItem hintItem = new JMenuItem("提示");
+        hintItem.addActionListener(e -> showHint());
+        gameMenu.add(hintItem);
+        JMenuItem selectItem = new JMenuItem("选择关卡...");
+        selectItem.addActionListener(e -> new LevelSelectDialog(this, LevelPack.builtIn(), currentLevel, this::loadLevel)
+                .setVisible(true));
+        gameMenu.add(selectItem);
+        JMenuItem editorItem = new JMenuItem("关卡编辑器");
+        editorItem.addActionListener(e -> new LevelEditor(this, getLevels()[currentLevel]).setVisible(true));
+        gameMenu.add(editorItem);
+        JMenuItem spectateItem = new JMenuItem("观战...");
+        spectateItem.addActionListener(e -> {
+            String user = JOptionPane.showInputDialog(this, "要观看的用户名");
+            if (user != null && !user.trim().isEmpty()) new SpectatorView(user.trim()).setVisible(true);
+        });
+        gameMenu.add(spectateItem);
         menuBar.add(gameMenu);
 
         JMenu userMenu = new JMenu("用户");
@@ -139,6 +279,10 @@ public class SokobanGame extends JFrame {
         historyItem.addActionListener(e -> showHistory());
         userMenu.add(historyItem);
 
+        JMenuItem statsItem = new JMenuItem("统计");
+        statsItem.addActionListener(e -> showStatistics());
+        userMenu.add(statsItem);
+
         JMenuItem logoutItem = new JMenuItem("注销");
         logoutItem.addActionListener(e -> logout());
         userMenu.add(logoutItem);
@@ -157,68 +301,7 @@ public class SokobanGame extends JFrame {
         return label;
     }
 
-    private void loadResources() {
-        // 创建基本图块
-        for (TileType type : TileType.values()) {
-            tileImages.put(type, createTileImage(type.color, type.description));
-        }
-
-        // 特殊图块（带图标）
-        playerImg = createTileImageWithIcon(TileType.PLAYER.color, "P", TileType.PLAYER.description);
-        boxImg = createTileImageWithIcon(TileType.BOX.color, "B", TileType.BOX.description);
-        targetImg = createTileImageWithIcon(TileType.TARGET.color, "○", TileType.TARGET.description);
-
-        // 替换默认图块
-        tileImages.put(TileType.PLAYER, playerImg);
-        tileImages.put(TileType.BOX, boxImg);
-        tileImages.put(TileType.TARGET, targetImg);
-        tileImages.put(TileType.BOX_ON_TARGET,
-                createTileImageWithIcon(TileType.BOX_ON_TARGET.color, "B", TileType.BOX_ON_TARGET.description));
-        tileImages.put(TileType.PLAYER_ON_TARGET,
-                createTileImageWithIcon(TileType.PLAYER_ON_TARGET.color, "P", TileType.PLAYER_ON_TARGET.description));
-    }
-
-    private Image createTileImage(Color bgColor, String text) {
-        BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = img.createGraphics();
-
-        // 背景
-        g.setColor(bgColor);
-        g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
-
-        // 边框
-        g.setColor(Color.BLACK);
-        g.drawRect(0, 0, TILE_SIZE-1, TILE_SIZE-1);
-
-        g.dispose();
-        return img;
-    }
-
-    private Image createTileImageWithIcon(Color bgColor, String icon, String text) {
-        BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = img.createGraphics();
-
-        // 背景
-        g.setColor(bgColor);
-        g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
-
-        // 边框
-        g.setColor(Color.BLACK);
-        g.drawRect(0, 0, TILE_SIZE-1, TILE_SIZE-1);
-
-        // 图标
-        g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.BOLD, 24));
-        FontMetrics fm = g.getFontMetrics();
-        int x = (TILE_SIZE - fm.stringWidth(icon)) / 2;
-        int y = (TILE_SIZE - fm.getHeight()) / 2 + fm.getAscent();
-        g.drawString(icon, x, y);
-
-        g.dispose();
-        return img;
-    }
-
-    private int[][][] getLevels() {
+    static int[][][] getLevels() {
         return new int[][][] {
                 // 第一关
                 {
@@ -253,82 +336,188 @@ public class SokobanGame extends JFrame {
     }
 
     private int getLevelCount() {
-        return getLevels().length;
+        return LEVEL_COUNT;
     }
 
     private void loadLevel(int level) {
+        long start = System.nanoTime();
+        GameEvents.LevelLoad event = new GameEvents.LevelLoad();
+        event.begin();
+        // 前后关卡已在后台准备好时直接取用，换关不再同步解析和分析
+        LevelPrefetcher.Prepared prepared = prefetcher.take(level);
+        startLevel(level, prepared != null ? prepared.data : getLevels()[level], prepared);
+        prefetcher.around(level, getLevelCount());
+        gamePanel.requestFocusInWindow();
+        METRICS.loadLevel.record(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.level = level;
+            event.width = state.map[0].length;
+            event.height = state.map.length;
+            event.commit();
+        }
+    }
+
+    private void startLevel(int level, int[][] levelData, LevelPrefetcher.Prepared prepared) {
+        // 没过关就离开的一局也记下思考时间，卡在哪里正是要看的
+        saveThinkTimes(false);
         currentLevel = level;
         moveCount = 0;
-        boxesLeft = 0;
-
-        int[][] levelData = getLevels()[level];
-        currentMap = new int[levelData.length][];
-
-        for (int i = 0; i < levelData.length; i++) {
-            currentMap[i] = new int[levelData[i].length];
-            System.arraycopy(levelData[i], 0, currentMap[i], 0, levelData[i].length);
-
-            for (int j = 0; j < levelData[i].length; j++) {
-                int tile = levelData[i][j];
-                if (tile == TileType.PLAYER.id || tile == TileType.PLAYER_ON_TARGET.id) {
-                    playerPos.setLocation(j, i);
-                }
-                if (tile == TileType.BOX.id) {
-                    boxesLeft++;
-                }
+        state.load(levelData);
+        moveTimer.start(state.width());
+        visited.clear();
+        visited.putIfAbsent(state.hash, 0);
+        effectiveMoves = 0;
+        repeated = false;
+        SokobanSolver layout = prepared != null && prepared.layout.matchesLayout(levelData)
+                ? prepared.layout : new SokobanSolver(levelData);
+        pushBound = new PushBound(layout, state.map);
+        background = prepared != null ? prepared.background : null;
+        if (prepared != null) hintService.useLayout(prepared.layout);
+
+        if (feed != null) feed.level(level);
+        try {
+            solutions = SolutionLibrary.read(SolutionLibrary.file(level));
+        } catch (IOException e) {
+            e.printStackTrace();
+            solutions = new SolutionLibrary();
+        }
+        solutionCursor = solutions.cursor();
+        if (journal != null) {
+            try {
+                journal.compact(level, state.map);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
-
-        updateUI();
-        gamePanel.requestFocusInWindow();
+        resetHint();
+        pathPlanner.reset(state.map, layout);
     }
 
-    private void updateUI() {
-        levelLabel.setText("关卡: " + (currentLevel + 1) + "/" + getLevelCount());
-        movesLabel.setText("步数: " + moveCount);
-        boxesLabel.setText("剩余箱子: " + boxesLeft);
+    // 后台准备好某一关；是当前关且还没有背景层时补上
+    private void onLevelPrepared(LevelPrefetcher.Prepared prepared) {
+        if (prepared.level == currentLevel && background == null && prepared.layout.matchesLayout(state.map)) {
+            background = prepared.background;
+            gamePanel.repaint();
+        }
+    }
 
-        prevLevelButton.setEnabled(currentLevel > 0);
-        nextLevelButton.setEnabled(currentLevel < getLevelCount() - 1);
+    private void onStateChanged(int changes) {
+        pendingChanges |= changes;
+        if (!uiTimer.isRunning()) uiTimer.start();
+    }
 
-        gamePanel.repaint();
+    // 把这一帧内积累的变化一次刷到界面上，只改动值确实变了的组件
+    private void updateUI() {
+        int changes = pendingChanges;
+        pendingChanges = 0;
+        if (GameState.Change.LEVEL.in(changes) && shownLevel != currentLevel) {
+            shownLevel = currentLevel;
+            levelLabel.setText("关卡: " + (currentLevel + 1) + "/" + getLevelCount());
+            prevLevelButton.setEnabled(currentLevel > 0);
+            nextLevelButton.setEnabled(currentLevel < getLevelCount() - 1);
+        }
+        if (GameState.Change.MOVED.in(changes) && (shownMoves != moveCount || shownEffectiveMoves != effectiveMoves)) {
+            shownMoves = moveCount;
+            shownEffectiveMoves = effectiveMoves;
+            movesLabel.setText(effectiveMoves < moveCount
+                    ? "步数: " + moveCount + "（去掉绕圈 " + effectiveMoves + "）"
+                    : "步数: " + moveCount);
+        }
+        if (GameState.Change.BOXES_LEFT.in(changes) && shownBoxes != state.boxesLeft) {
+            shownBoxes = state.boxesLeft;
+            boxesLabel.setText("剩余箱子: " + state.boxesLeft);
+        }
+        int bound = pushBound.value();
+        if ((changes & (GameState.Change.PUSHED.bit | GameState.Change.LEVEL.bit)) != 0 && shownBound != bound) {
+            shownBound = bound;
+            boundLabel.setText(bound < 0 ? "至少还需推: -" : bound >= SokobanSolver.INF ? "已成死局" : "至少还需推: " + bound);
+        }
+        if (changes != 0) gamePanel.repaint();
+        // 过关由 WON 事件触发，键盘、鼠标和续玩重放都走这里；同一帧内过关后又撤销则不算
+        if (GameState.Change.WON.in(changes) && checkWin()) {
+            stopHint();
+            showWinMessage();
+        }
     }
 
     private void renderGame(Graphics g) {
-        if (currentMap == null) return;
-
-        int mapWidth = currentMap[0].length * TILE_SIZE;
-        int mapHeight = currentMap.length * TILE_SIZE;
-        int startX = (gamePanel.getWidth() - mapWidth) / 2;
-        int startY = (gamePanel.getHeight() - mapHeight) / 2;
-
-        // 绘制地图
-        for (int y = 0; y < currentMap.length; y++) {
-            for (int x = 0; x < currentMap[y].length; x++) {
-                TileType tile = TileType.fromId(currentMap[y][x]);
-                Image img = tileImages.get(tile);
-                if (img != null) {
-                    g.drawImage(img, startX + x * TILE_SIZE, startY + y * TILE_SIZE, null);
-                }
+        if (state.map == null) return;
 
-                // 在目标点上添加特殊标记
-                if (tile == TileType.TARGET || tile == TileType.BOX_ON_TARGET || tile == TileType.PLAYER_ON_TARGET) {
-                    g.setColor(new Color(255, 255, 255, 100));
-                    g.fillOval(startX + x * TILE_SIZE + 10, startY + y * TILE_SIZE + 10,
-                            TILE_SIZE - 20, TILE_SIZE - 20);
-                }
-            }
+        long start = System.nanoTime();
+        GameEvents.Paint event = new GameEvents.Paint();
+        event.begin();
+        renderer.render(g, state.map, background, gamePanel.getWidth(), gamePanel.getHeight());
+
+        if (hintVisible) {
+            Point origin = mapOrigin();
+            renderHint(g, origin.x, origin.y);
+        }
+        if (repeated) {
+            String repeatNotice = "你之前到过这个局面（第 " + effectiveMoves + " 步），这一圈推动没有进展";
+            g.setColor(new Color(200, 90, 0));
+            int textWidth = g.getFontMetrics().stringWidth(repeatNotice);
+            // 画在棋盘下方，不与顶部的帮助文字（y=30）和提示（y=50）重叠
+            int y = Math.min(mapOrigin().y + state.map.length * TILE_SIZE + 20, gamePanel.getHeight() - 8);
+            g.drawString(repeatNotice, (gamePanel.getWidth() - textWidth) / 2, y);
+        }
+        METRICS.render.record(System.nanoTime() - start);
+        if (!painted) {
+            painted = true;
+            StartupTimer.record("paint", constructedAt);
+            StartupTimer.mark("first paint");
+            StartupTimer.report();
         }
+        if (event.shouldCommit()) {
+            event.width = gamePanel.getWidth();
+            event.height = gamePanel.getHeight();
+            event.cells = state.map.length * state.map[0].length;
+            event.commit();
+        }
+    }
+
+    private Point mapOrigin() {
+        return BoardRenderer.origin(state.map, gamePanel.getWidth(), gamePanel.getHeight());
+    }
+
+    private Point cellAt(Point p) {
+        if (state.map == null) return null;
+        Point origin = mapOrigin();
+        int x = Math.floorDiv(p.x - origin.x, TILE_SIZE);
+        int y = Math.floorDiv(p.y - origin.y, TILE_SIZE);
+        if (y < 0 || y >= state.map.length || x < 0 || x >= state.map[y].length) return null;
+        return new Point(x, y);
+    }
 
-        // 绘制帮助文本
-        g.setColor(Color.BLACK);
-        g.setFont(new Font("微软雅黑", Font.PLAIN, 14));
-        String helpText = "使用方向键或WASD移动，R重玩当前关卡";
-        int textWidth = g.getFontMetrics().stringWidth(helpText);
-        g.drawString(helpText, (gamePanel.getWidth() - textWidth) / 2, 30);
+    private boolean isBoxAt(Point cell) {
+        return SokobanSolver.isBoxId(state.map[cell.y][cell.x]);
+    }
+
+    private void renderHint(Graphics g, int startX, int startY) {
+        String hintText;
+        if (hintMoves == null) {
+            hintText = "提示计算中...";
+        } else if (hintMoves.isEmpty()) {
+            hintText = "未找到可行的提示";
+        } else {
+            char move = hintMoves.charAt(0);
+            int dir = SokobanSolver.directionOf(move);
+            int x = state.player.x + SokobanSolver.DX[dir];
+            int y = state.player.y + SokobanSolver.DY[dir];
+            g.setColor(new Color(255, 255, 0, 120));
+            g.fillRect(startX + x * TILE_SIZE, startY + y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+
+            String[] names = {"上", "左", "下", "右"};
+            hintText = "提示: 向" + names[dir] + (Character.isUpperCase(move) ? "推箱子" : "走")
+                    + "（剩余约 " + hintMoves.length() + " 步）";
+        }
+        int textWidth = g.getFontMetrics().stringWidth(hintText);
+        g.drawString(hintText, (gamePanel.getWidth() - textWidth) / 2, 50);
     }
 
     private void handleKeyPress(KeyEvent e) {
+        long now = System.nanoTime();
+        int fromX = state.player.x;
+        int fromY = state.player.y;
         boolean moved = false;
         int dx = 0, dy = 0;
 
@@ -352,97 +541,178 @@ public class SokobanGame extends JFrame {
             case KeyEvent.VK_R:
                 loadLevel(currentLevel);
                 return;
+            case KeyEvent.VK_H:
+                showHint();
+                return;
+            case KeyEvent.VK_Z:
+            case KeyEvent.VK_BACK_SPACE:
+                if (!checkWin() && undoMovePlayer()) {
+                    moveTimer.stamp(now, fromX, fromY);
+                    moveCount--;
+                    resetHint();
+                }
+                return;
         }
 
-        if (dx != 0 || dy != 0) {
+        // 胜利提示在下一帧才弹出，这之间按下的键不再走棋，免得多计步数或把箱子推离目标点
+        if ((dx != 0 || dy != 0) && !checkWin()) {
             moved = tryMovePlayer(dx, dy);
         }
 
         if (moved) {
+            moveTimer.stamp(now, fromX, fromY);
             moveCount++;
-            updateUI();
-
-            if (checkWin()) {
-                showWinMessage();
-            }
+            resetHint();
         }
     }
 
-    private boolean tryMovePlayer(int dx, int dy) {
-        int newX = playerPos.x + dx;
-        int newY = playerPos.y + dy;
-
-        // 检查边界
-        if (newX < 0 || newY < 0 || newY >= currentMap.length || newX >= currentMap[newY].length) {
-            return false;
+    private void handleMouseRelease(Point p) {
+        Point start = dragStart;
+        Point cell = cellAt(p);
+        dragStart = null;
+        if (start == null || cell == null) return;
+
+        String moves;
+        if (!start.equals(cell) && isBoxAt(start)) {
+            moves = pathPlanner.pushTo(state.map, start.x, start.y, cell.x, cell.y);
+        } else if (start.equals(cell)) {
+            moves = pathPlanner.walkTo(state.map, cell.x, cell.y);
+        } else {
+            moves = null;
         }
 
-        TileType targetTile = TileType.fromId(currentMap[newY][newX]);
-
-        // 检查是否撞墙
-        if (targetTile.isObstacle) {
-            return false;
+        if (moves == null) {
+            Toolkit.getDefaultToolkit().beep();
+        } else if (!moves.isEmpty()) {
+            applyMoves(moves);
         }
+    }
 
-        // 检查是否推动箱子
-        if (targetTile == TileType.BOX || targetTile == TileType.BOX_ON_TARGET) {
-            int boxNewX = newX + dx;
-            int boxNewY = newY + dy;
+    // 一次性执行多步走法，只在最后更新一次界面
+    private void applyMoves(String moves) {
+        long now = System.nanoTime();
+        int fromX = state.player.x;
+        int fromY = state.player.y;
+        int applied = 0;
+        for (int i = 0; i < moves.length() && !checkWin(); i++) {
+            int dir = SokobanSolver.directionOf(moves.charAt(i));
+            if (!tryMovePlayer(SokobanSolver.DX[dir], SokobanSolver.DY[dir])) break;
+            applied++;
+        }
+        if (applied == 0) return;
+        moveTimer.stamp(now, fromX, fromY);
 
-            // 检查箱子是否可以推动
-            if (boxNewX < 0 || boxNewY < 0 || boxNewY >= currentMap.length || boxNewX >= currentMap[boxNewY].length) {
-                return false;
-            }
+        moveCount += applied;
+        resetHint();
+    }
 
-            TileType newBoxTile = TileType.fromId(currentMap[boxNewY][boxNewX]);
-            if (newBoxTile.isObstacle || newBoxTile == TileType.BOX || newBoxTile == TileType.BOX_ON_TARGET) {
-                return false;
-            }
+    private boolean tryMovePlayer(int dx, int dy) {
+        GameEvents.Move event = new GameEvents.Move();
+        event.begin();
+        int result = state.tryMove(dx, dy);
+        if (event.shouldCommit()) {
+            event.direction = dy < 0 ? "u" : dx < 0 ? "l" : dy > 0 ? "d" : "r";
+            event.pushed = result == GameState.PUSHED;
+            event.blocked = result == GameState.BLOCKED;
+            event.commit();
+        }
+        if (result == GameState.BLOCKED) return false;
 
-            // 移动箱子
-            if (newBoxTile == TileType.TARGET) {
-                currentMap[boxNewY][boxNewX] = TileType.BOX_ON_TARGET.id;
-                boxesLeft--;
-            } else {
-                currentMap[boxNewY][boxNewX] = TileType.BOX.id;
+        METRICS.moves.increment();
+        if (result == GameState.PUSHED) {
+            pathPlanner.invalidate();
+            pushBound.move(state.player.x, state.player.y, state.player.x + dx, state.player.y + dy);
+        }
+        notePosition();
+        solutionCursor.advance(state.lastMove());
+        int dir = dy < 0 ? 0 : dx < 0 ? 1 : dy > 0 ? 2 : 3;
+        if (feed != null) feed.move(dir);
+        if (journal != null) {
+            try {
+                journal.append(dir);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+        }
+        return true;
+    }
 
-            // 更新原箱子位置
-            if (targetTile == TileType.BOX_ON_TARGET) {
-                currentMap[newY][newX] = TileType.TARGET.id;
-                boxesLeft++;
-            } else {
-                currentMap[newY][newX] = TileType.FLOOR.id;
+    private boolean undoMovePlayer() {
+        int x = state.player.x;
+        int y = state.player.y;
+        int result = state.undo();
+        if (result == GameState.BLOCKED) return false;
+        if (result == GameState.PUSHED) {
+            pathPlanner.invalidate();
+            // 箱子从玩家撤销前的前方退回到玩家撤销前的位置
+            pushBound.move(2 * x - state.player.x, 2 * y - state.player.y, x, y);
+        }
+        // 撤销回到的局面一定出现过
+        effectiveMoves = (int) (visited.get(state.hash) >>> 32);
+        repeated = false;
+        solutionCursor.back();
+        if (feed != null) feed.undo();
+        if (journal != null) {
+            try {
+                journal.append(MoveJournal.UNDO);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
+        return true;
+    }
 
-        // 更新玩家位置
-        TileType currentPlayerTile = TileType.fromId(currentMap[playerPos.y][playerPos.x]);
-        if (currentPlayerTile == TileType.PLAYER_ON_TARGET) {
-            currentMap[playerPos.y][playerPos.x] = TileType.TARGET.id;
-        } else {
-            currentMap[playerPos.y][playerPos.x] = TileType.FLOOR.id;
+    // 记下新局面；回到推过箱子之前的局面说明中间的推动白做了，给出提醒
+    private void notePosition() {
+        long first = visited.putIfAbsent(state.hash, ((long) state.steps() << 32) | state.pushes);
+        if (first < 0) {
+            effectiveMoves = state.steps();
+            repeated = false;
+            return;
         }
+        effectiveMoves = (int) (first >>> 32);
+        repeated = state.pushes > (int) first;
+    }
 
-        playerPos.translate(dx, dy);
+    private void resetHint() {
+        hintMoves = null;
+        hintVisible = false;
+        hintService.restart(state.map);
+    }
 
-        TileType newPlayerTile = TileType.fromId(currentMap[playerPos.y][playerPos.x]);
-        if (newPlayerTile == TileType.TARGET) {
-            currentMap[playerPos.y][playerPos.x] = TileType.PLAYER_ON_TARGET.id;
-        } else {
-            currentMap[playerPos.y][playerPos.x] = TileType.PLAYER.id;
+    // 已经过关，不再需要提示
+    private void stopHint() {
+        hintMoves = null;
+        hintVisible = false;
+        hintService.cancel();
+    }
+
+    private void showHint() {
+        hintVisible = true;
+        // 后台还没算出提示而玩家仍走在已知解法上时，直接用解法库里最短的后续走法
+        if (hintMoves == null) {
+            String known = solutionCursor.continuation();
+            if (known != null && !known.isEmpty()) hintMoves = known;
         }
+        gamePanel.repaint();
+    }
 
-        return true;
+    private void onHintReady(String moves) {
+        hintMoves = moves;
+        if (hintVisible) gamePanel.repaint();
     }
 
     private boolean checkWin() {
-        return boxesLeft == 0;
+        return state.isWon();
     }
 
     private void showWinMessage() {
         saveGameRecord();
+        saveThinkTimes(true);
+        if (journal != null) journal.finish();
         String message = "恭喜过关！\n步数: " + moveCount;
+        if (effectiveMoves < moveCount) message += "（去掉绕圈 " + effectiveMoves + "）";
+        message += saveSolution();
         if (currentLevel < getLevelCount() - 1) {
             message += "\n是否进入下一关？";
             int option = JOptionPane.showConfirmDialog(this, message, "胜利",
@@ -456,41 +726,136 @@ public class SokobanGame extends JFrame {
         }
     }
 
+    // 登录与注册共用，压力测试工具也用它生成相同的哈希
+    static String hashPassword(String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(password.getBytes());
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new RuntimeException("密码加密失败", e);
+        }
+    }
+
     private void saveGameRecord() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter("records.dat", true))) {
-            pw.printf("%s|%d|%d|%d%n",
-                    currentUser, currentLevel, moveCount, System.currentTimeMillis());
+        try {
+            RECORDS.append(currentUser, currentLevel, moveCount, System.currentTimeMillis());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void saveThinkTimes(boolean solved) {
+        try {
+            moveTimer.save(currentUser, currentLevel, solved, System.currentTimeMillis());
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    // 收进本关的解法库，返回胜利提示中追加的说明
+    private String saveSolution() {
+        String moves = state.moves();
+        boolean[] added = {false};
+        try {
+            solutions = SolutionLibrary.update(currentLevel, lib -> added[0] = lib.add(moves));
+        } catch (IOException e) {
+            e.printStackTrace();
+            added[0] = solutions.add(moves);
+        }
+        // 换成了重读的库，游标也要换过去（过关后仍可撤销）
+        solutionCursor = solutions.cursor(moves);
+        return String.format("\n%s本关已收录 %d 个解法，最少 %d 步，最少推动 %d 次",
+                added[0] ? "这是一种新走法！" : "", solutions.solutions(),
+                solutions.fewestMoves().length(), SolutionLibrary.pushes(solutions.fewestPushes()));
+    }
+
+    // 表格只按需读取可见的几页，点击列标题排序
     private void showHistory() {
-        StringBuilder records = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new FileReader("records.dat"))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts[0].equals(currentUser)) {
-                    records.append(String.format("关卡 %d: %d 步 (%s)%n",
-                            Integer.parseInt(parts[1]) + 1,
-                            Integer.parseInt(parts[2]),
-                            new Date(Long.parseLong(parts[3])).toString()));
+        HistoryTableModel model = new HistoryTableModel(RECORDS, currentUser);
+        JTable table = new JTable(model);
+        table.setAutoCreateColumnsFromModel(false);
+        JLabel status = new JLabel();
+        Runnable refresh = () -> {
+            status.setText(model.isCounted()
+                    ? String.format("共 %d 条记录，点击列标题排序", model.getRowCount())
+                    : String.format("正在读取… 已找到 %d 条", model.getRowCount()));
+            for (int i = 0; i < model.getColumnCount(); i++) {
+                table.getColumnModel().getColumn(i).setHeaderValue(model.getColumnName(i));
+            }
+            table.getTableHeader().repaint();
+        };
+        model.addTableModelListener(e -> refresh.run());
+        refresh.run();
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    model.sortBy(table.convertColumnIndexToModel(column));
                 }
             }
-        } catch (IOException e) {
-            records.append("暂无历史记录");
-        }
+        });
 
-        JTextArea textArea = new JTextArea(records.toString());
-        textArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(textArea);
-        scrollPane.setPreferredSize(new Dimension(400, 300));
-        JOptionPane.showMessageDialog(this, scrollPane,
+        JPanel panel = new JPanel(new BorderLayout(0, 6));
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(460, 320));
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(status, BorderLayout.SOUTH);
+        JOptionPane.showMessageDialog(this, panel,
                 currentUser + "的游戏记录", JOptionPane.PLAIN_MESSAGE);
+        model.close();
+    }
+
+    // 大文件的统计可能要几秒，放到后台线程，完成后再弹出
+    private void showStatistics() {
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return RecordStats.scan(RECORDS, Runtime.getRuntime().availableProcessors())
+                        .report(getLevelCount()) + thinkTimeReport();
+            } catch (IOException e) {
+                return "暂无统计数据";
+            }
+        }).thenAccept(report -> SwingUtilities.invokeLater(() -> {
+            JTextArea textArea = new JTextArea(report);
+            textArea.setEditable(false);
+            textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+            JScrollPane scrollPane = new JScrollPane(textArea);
+            scrollPane.setPreferredSize(new Dimension(520, 360));
+            JOptionPane.showMessageDialog(this, scrollPane, "统计", JOptionPane.PLAIN_MESSAGE);
+        }));
+    }
+
+    private static String thinkTimeReport() {
+        try {
+            return "\n思考时间\n\n" + ThinkTimeReport.read(MoveTimer.LOG).report(5);
+        } catch (IOException e) {
+            return "";
+        }
     }
 
     private void logout() {
+        saveThinkTimes(false);
+        hintService.shutdown();
+        prefetcher.shutdown();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (feed != null) {
+            try {
+                feed.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
         dispose();
         new LoginDialog().setVisible(true);
     }
@@ -502,6 +867,12 @@ public class SokobanGame extends JFrame {
             setLocationRelativeTo(null);
             setDefaultCloseOperation(DISPOSE_ON_CLOSE);
             initUI();
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    StartupTimer.mark("login shown");
+                }
+            });
         }
 
         private void initUI() {
@@ -601,58 +972,23 @@ public class SokobanGame extends JFrame {
         }
 
         private boolean checkLogin(String username, String password) {
-            try (BufferedReader br = new BufferedReader(new FileReader("users.dat"))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(":");
-                    if (parts[0].equals(username) && parts[1].equals(hashPassword(password))) {
-                        return true;
-                    }
-                }
-            } catch (IOException e) {
-                return false;
+            long start = System.nanoTime();
+            try {
+                return USERS.check(username, hashPassword(password));
+            } finally {
+                METRICS.login.record(System.nanoTime() - start);
             }
-            return false;
         }
 
         private boolean registerUser(String username, String password) {
-            // 检查用户是否存在
-            try (BufferedReader br = new BufferedReader(new FileReader("users.dat"))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    if (line.startsWith(username + ":")) {
-                        return false;
-                    }
-                }
-            } catch (IOException e) {
-                // 文件不存在，继续注册
-            }
-
-            // 注册新用户
-            try (PrintWriter pw = new PrintWriter(new FileWriter("users.dat", true))) {
-                pw.println(username + ":" + hashPassword(password));
-                return true;
-            } catch (IOException e) {
-                return false;
-            }
-        }
-
-        private String hashPassword(String password) {
-            try {
-                MessageDigest md = MessageDigest.getInstance("SHA-256");
-                byte[] hash = md.digest(password.getBytes());
-                StringBuilder sb = new StringBuilder();
-                for (byte b : hash) {
-                    sb.append(String.format("%02x", b));
-                }
-                return sb.toString();
-            } catch (Exception e) {
-                throw new RuntimeException("密码加密失败", e);
-            }
+            return USERS.register(username, hashPassword(password));
         }
     }
 
     public static void main(String[] args) {
+        StartupTimer.started(MAIN_START);
+        // 用户输入账号密码期间在后台准备图块和字体
+        BoardRenderer.warmUp();
         SwingUtilities.invokeLater(() -> {
             new LoginDialog().setVisible(true);
         });
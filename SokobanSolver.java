@@ -0,0 +1,381 @@
+package tom.jiafei;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import tom.jiafei.SokobanGame.TileType;
+
+// 推箱子求解器：关卡静态分析（死格、推箱距离）+ 以推动为单位的 A* 搜索
+// 解以 LURD 记谱法表示：小写为走动，大写为推动
+final class SokobanSolver {
+    // 方向顺序：上、左、下、右，(d + 2) & 3 为反方向
+    static final int[] DX = {0, -1, 0, 1};
+    static final int[] DY = {-1, 0, 1, 0};
+    static final char[] MOVES = {'u', 'l', 'd', 'r'};
+
+    static final int INF = Integer.MAX_VALUE / 4;
+
+    enum Status { SOLVED, UNSOLVABLE, BUDGET_EXCEEDED, CANCELLED }
+
+    static final class Result {
+        final Status status;
+        final String moves;
+        final int expanded;
+
+        Result(Status status, String moves, int expanded) {
+            this.status = status;
+            this.moves = moves;
+            this.expanded = expanded;
+        }
+    }
+
+    final int width;
+    final int height;
+    final boolean[] wall;
+    final boolean[] target;
+    // 箱子一旦进入便无法再推到任何目标点的格子
+    final boolean[] dead;
+    final int[] targetCells;
+    // [目标序号][格子]：忽略其他箱子时把箱子从该格推到目标的最少推动次数
+    final int[][] pushDistance;
+
+    SokobanSolver(int[][] map) {
+        height = map.length;
+        int w = 0;
+        for (int[] row : map) {
+            w = Math.max(w, row.length);
+        }
+        width = w;
+
+        int size = width * height;
+        wall = new boolean[size];
+        target = new boolean[size];
+        int targetCount = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int id = x < map[y].length ? map[y][x] : TileType.WALL.id;
+                int cell = y * width + x;
+                wall[cell] = id == TileType.WALL.id;
+                target[cell] = isTargetId(id);
+                if (target[cell]) targetCount++;
+            }
+        }
+
+        targetCells = new int[targetCount];
+        for (int cell = 0, t = 0; cell < size; cell++) {
+            if (target[cell]) targetCells[t++] = cell;
+        }
+
+        dead = new boolean[size];
+        Arrays.fill(dead, true);
+        pushDistance = new int[targetCount][];
+        for (int t = 0; t < targetCount; t++) {
+            pushDistance[t] = pullDistances(targetCells[t]);
+            for (int cell = 0; cell < size; cell++) {
+                if (pushDistance[t][cell] < INF) dead[cell] = false;
+            }
+        }
+    }
+
+    static boolean isTargetId(int id) {
+        return id == TileType.TARGET.id || id == TileType.BOX_ON_TARGET.id
+                || id == TileType.PLAYER_ON_TARGET.id;
+    }
+
+    static boolean isBoxId(int id) {
+        return id == TileType.BOX.id || id == TileType.BOX_ON_TARGET.id;
+    }
+
+    static int[][] copyOf(int[][] map) {
+        int[][] copy = new int[map.length][];
+        for (int i = 0; i < map.length; i++) {
+            copy[i] = map[i].clone();
+        }
+        return copy;
+    }
+
+    static int directionOf(char move) {
+        switch (Character.toLowerCase(move)) {
+            case 'u': return 0;
+            case 'l': return 1;
+            case 'd': return 2;
+            case 'r': return 3;
+            default: return -1;
+        }
+    }
+
+    // 箱子位置 + 玩家位置组成的紧凑状态键（格子序号不超过 65535）
+    static String stateKey(int[] sortedBoxes, int player) {
+        char[] key = new char[sortedBoxes.length + 1];
+        for (int i = 0; i < sortedBoxes.length; i++) {
+            key[i] = (char) sortedBoxes[i];
+        }
+        key[sortedBoxes.length] = (char) player;
+        return new String(key);
+    }
+
+    // 墙和目标点布局是否与本次分析一致（同一关卡的不同局面）
+    boolean matchesLayout(int[][] map) {
+        if (map.length != height) return false;
+        for (int y = 0; y < height; y++) {
+            if (map[y].length > width) return false;
+            for (int x = 0; x < width; x++) {
+                int id = x < map[y].length ? map[y][x] : TileType.WALL.id;
+                int cell = y * width + x;
+                if (wall[cell] != (id == TileType.WALL.id) || target[cell] != isTargetId(id)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    int step(int cell, int dir) {
+        int x = cell % width + DX[dir];
+        int y = cell / width + DY[dir];
+        if (x < 0 || y < 0 || x >= width || y >= height) return -1;
+        return y * width + x;
+    }
+
+    boolean open(int cell) {
+        return cell >= 0 && !wall[cell];
+    }
+
+    int playerCell(int[][] map) {
+        for (int y = 0; y < map.length; y++) {
+            for (int x = 0; x < map[y].length; x++) {
+                int id = map[y][x];
+                if (id == TileType.PLAYER.id || id == TileType.PLAYER_ON_TARGET.id) {
+                    return y * width + x;
+                }
+            }
+        }
+        return -1;
+    }
+
+    int[] boxCells(int[][] map) {
+        int count = 0;
+        for (int[] row : map) {
+            for (int id : row) {
+                if (isBoxId(id)) count++;
+            }
+        }
+        int[] boxes = new int[count];
+        int i = 0;
+        for (int y = 0; y < map.length; y++) {
+            for (int x = 0; x < map[y].length; x++) {
+                if (isBoxId(map[y][x])) boxes[i++] = y * width + x;
+            }
+        }
+        return boxes;
+    }
+
+    // 每个箱子到最近目标的推动距离之和；存在死箱时返回 INF
+    int lowerBound(int[] boxes) {
+        int sum = 0;
+        for (int box : boxes) {
+            int best = INF;
+            for (int[] distance : pushDistance) {
+                best = Math.min(best, distance[box]);
+            }
+            if (best >= INF) return INF;
+            sum += best;
+        }
+        return sum;
+    }
+
+    // 在箱子状态上执行一步 LURD 走法（调用方保证合法），返回新的玩家位置
+    int applyMove(int[] sortedBoxes, int player, char move) {
+        int dir = directionOf(move);
+        int next = step(player, dir);
+        if (Character.isUpperCase(move)) {
+            int i = Arrays.binarySearch(sortedBoxes, next);
+            if (i >= 0) {
+                sortedBoxes[i] = step(next, dir);
+                Arrays.sort(sortedBoxes);
+            }
+        }
+        return next;
+    }
+
+    private int[] pullDistances(int goal) {
+        int[] distance = new int[wall.length];
+        Arrays.fill(distance, INF);
+        distance[goal] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(goal);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (int dir = 0; dir < 4; dir++) {
+                int back = (dir + 2) & 3;
+                int from = step(cell, back);
+                int stand = from < 0 ? -1 : step(from, back);
+                if (open(from) && open(stand) && distance[from] == INF) {
+                    distance[from] = distance[cell] + 1;
+                    queue.add(from);
+                }
+            }
+        }
+        return distance;
+    }
+
+    Result solve(int[][] map, int maxNodes, BooleanSupplier cancelled) {
+        return solve(boxCells(map), playerCell(map), maxNodes, cancelled);
+    }
+
+    Result solve(int[] boxes, int player, int maxNodes, BooleanSupplier cancelled) {
+        int[] start = boxes.clone();
+        Arrays.sort(start);
+        int h0 = lowerBound(start);
+        if (player < 0 || start.length > targetCells.length || h0 >= INF) {
+            return new Result(Status.UNSOLVABLE, null, 0);
+        }
+
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        Set<String> closed = new HashSet<>();
+        boolean[] occupied = new boolean[wall.length];
+        int[] reach = new int[wall.length];
+        int[] queue = new int[wall.length];
+        int stamp = 0;
+        int expanded = 0;
+
+        open.add(new Node(start, player, null, -1, 0, h0));
+        while (!open.isEmpty()) {
+            if ((expanded & 0xFF) == 0 && cancelled.getAsBoolean()) {
+                return new Result(Status.CANCELLED, null, expanded);
+            }
+            Node node = open.poll();
+            if (node.h == 0) {
+                return new Result(Status.SOLVED, reconstruct(node), expanded);
+            }
+
+            for (int box : node.boxes) occupied[box] = true;
+            stamp++;
+            int normalized = flood(node.player, occupied, reach, stamp, queue);
+            if (closed.add(stateKey(node.boxes, normalized))) {
+                if (++expanded > maxNodes) {
+                    return new Result(Status.BUDGET_EXCEEDED, null, expanded);
+                }
+                for (int i = 0; i < node.boxes.length; i++) {
+                    int box = node.boxes[i];
+                    for (int dir = 0; dir < 4; dir++) {
+                        int stand = step(box, (dir + 2) & 3);
+                        int dest = step(box, dir);
+                        if (stand < 0 || reach[stand] != stamp || !open(dest) || occupied[dest] || dead[dest]) {
+                            continue;
+                        }
+                        int[] next = node.boxes.clone();
+                        next[i] = dest;
+                        Arrays.sort(next);
+                        int h = lowerBound(next);
+                        if (h < INF) {
+                            open.add(new Node(next, box, node, box * 4 + dir, node.g + 1, h));
+                        }
+                    }
+                }
+            }
+            for (int box : node.boxes) occupied[box] = false;
+        }
+        return new Result(Status.UNSOLVABLE, null, expanded);
+    }
+
+    // 从 start 出发洪水填充可达区域，返回区域内最小的格子序号作为玩家位置的规范形式
+    int flood(int start, boolean[] occupied, int[] reach, int stamp, int[] queue) {
+        int head = 0, tail = 0, min = start;
+        reach[start] = stamp;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            if (cell < min) min = cell;
+            for (int dir = 0; dir < 4; dir++) {
+                int next = step(cell, dir);
+                if (open(next) && !occupied[next] && reach[next] != stamp) {
+                    reach[next] = stamp;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return min;
+    }
+
+    // 玩家在箱子间从 from 走到 to 的最短走法（仅小写），不可达时返回 null
+    String walkPath(int from, int to, boolean[] occupied) {
+        if (from == to) return "";
+        int[] parentDir = new int[wall.length];
+        Arrays.fill(parentDir, -1);
+        parentDir[from] = 4;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (int dir = 0; dir < 4; dir++) {
+                int next = step(cell, dir);
+                if (open(next) && !occupied[next] && parentDir[next] < 0) {
+                    parentDir[next] = dir;
+                    if (next == to) {
+                        StringBuilder path = new StringBuilder();
+                        for (int c = to; c != from; c = step(c, (parentDir[c] + 2) & 3)) {
+                            path.append(MOVES[parentDir[c]]);
+                        }
+                        return path.reverse().toString();
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+        return null;
+    }
+
+    private String reconstruct(Node goal) {
+        ArrayDeque<Node> chain = new ArrayDeque<>();
+        for (Node n = goal; n.parent != null; n = n.parent) {
+            chain.push(n);
+        }
+        Node root = goal;
+        while (root.parent != null) root = root.parent;
+
+        boolean[] occupied = new boolean[wall.length];
+        for (int box : root.boxes) occupied[box] = true;
+        int player = root.player;
+        StringBuilder moves = new StringBuilder();
+        for (Node n : chain) {
+            int box = n.push / 4;
+            int dir = n.push % 4;
+            moves.append(walkPath(player, step(box, (dir + 2) & 3), occupied));
+            moves.append(Character.toUpperCase(MOVES[dir]));
+            occupied[box] = false;
+            occupied[step(box, dir)] = true;
+            player = box;
+        }
+        return moves.toString();
+    }
+
+    private static final class Node implements Comparable<Node> {
+        final int[] boxes;
+        final int player;
+        final Node parent;
+        // 箱子原位置 * 4 + 方向
+        final int push;
+        final int g;
+        final int h;
+
+        Node(int[] boxes, int player, Node parent, int push, int g, int h) {
+            this.boxes = boxes;
+            this.player = player;
+            this.parent = parent;
+            this.push = push;
+            this.g = g;
+            this.h = h;
+        }
+
+        @Override
+        public int compareTo(Node o) {
+            int f = g + h, of = o.g + o.h;
+            return f != of ? Integer.compare(f, of) : Integer.compare(h, o.h);
+        }
+    }
+}
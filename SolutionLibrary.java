@@ -0,0 +1,395 @@
+package tom.jiafei;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// 一关的解法库：所有玩家通关的走法（LURD）存进一棵压缩前缀树（基数树），公共前缀只存一次，
+// 只有分叉之后的部分占用新的空间；解法越多，新解法与已有解法的公共前缀越长，每条新解法的边际开销越小
+// 节点和边上的走法都放在基本类型数组里：边的标签是 labels 中的一段，每步一个字节（0~3 走，4~7 推）
+// minRest 记录从节点往下到最近一个解法终点还差几步，用来在已知前缀上给出最短的后续走法
+// 另外单独保留步数最少和推动最少的解法
+// 对局中用 Cursor 跟着玩家的每一步在树上前进或后退，不分配对象；只在要显示提示时才拼出后续走法
+// 多个游戏进程可能共用 solutions 目录，收录解法时在跨进程写锁内重读文件、合并后再写回
+final class SolutionLibrary {
+    private static final int MAGIC = 0x534B534C; // "SKSL"
+    private static final int VERSION = 1;
+    private static final int NONE = -1;
+    private static final int INF = Integer.MAX_VALUE;
+    private static final File DIR = new File("solutions");
+
+    private byte[] labels = new byte[256];
+    private int labelCount;
+
+    private int nodeCount;
+    private int[] start = new int[16];
+    private int[] length = new int[16];
+    private int[] child = new int[16];
+    private int[] sibling = new int[16];
+    // 在该节点结束的解法条数（同一走法提交多次时累加）
+    private int[] ends = new int[16];
+    private int[] minRest = new int[16];
+    // 只在内存中维护，读文件时由 child/sibling 重建
+    private int[] parent = new int[16];
+
+    private int solutions;
+    private String fewestMoves;
+    private String fewestPushes;
+    private int fewestPushesCount = INF;
+
+    // 插入路径上的 (节点, 节点结束处的深度)，避免每次插入分配
+    private int[] pathNodes = new int[16];
+    private int[] pathDepths = new int[16];
+
+    private static JournaledWriter writer;
+
+    SolutionLibrary() {
+        newNode(0, 0);
+    }
+
+    static File file(int level) {
+        return new File(DIR, "level-" + (level + 1) + ".lib");
+    }
+
+    private static synchronized JournaledWriter writer() throws IOException {
+        if (writer == null) {
+            if (!DIR.isDirectory() && !DIR.mkdirs()) {
+                throw new IOException("无法创建目录 " + DIR);
+            }
+            writer = new JournaledWriter(new File(DIR, "LOCK"), new File(DIR, "JOURNAL"));
+        }
+        return writer;
+    }
+
+    // 持锁重读第 level 关的库，交给 change 修改后写回，返回修改后的库
+    static SolutionLibrary update(int level, Consumer<SolutionLibrary> change) throws IOException {
+        File file = file(level);
+        return writer().write(() -> {
+            SolutionLibrary lib = read(file);
+            change.accept(lib);
+            lib.write(file);
+            return lib;
+        });
+    }
+
+    int solutions() {
+        return solutions;
+    }
+
+    String fewestMoves() {
+        return fewestMoves;
+    }
+
+    String fewestPushes() {
+        return fewestPushes;
+    }
+
+    // 结构占用的字节数：边标签每步一字节，每个节点七个 int
+    long bytes() {
+        return labelCount + nodeCount * 28L;
+    }
+
+    private static int code(char move) {
+        int dir = SokobanSolver.directionOf(move);
+        if (dir < 0) throw new IllegalArgumentException("不是 LURD 走法: " + move);
+        return Character.isUpperCase(move) ? dir + 4 : dir;
+    }
+
+    private static char move(int code) {
+        char c = SokobanSolver.MOVES[code & 3];
+        return code >= 4 ? Character.toUpperCase(c) : c;
+    }
+
+    private int newNode(int labelStart, int labelLength) {
+        if (nodeCount == start.length) {
+            int n = nodeCount * 2;
+            start = Arrays.copyOf(start, n);
+            length = Arrays.copyOf(length, n);
+            child = Arrays.copyOf(child, n);
+            sibling = Arrays.copyOf(sibling, n);
+            ends = Arrays.copyOf(ends, n);
+            minRest = Arrays.copyOf(minRest, n);
+            parent = Arrays.copyOf(parent, n);
+        }
+        int node = nodeCount++;
+        start[node] = labelStart;
+        length[node] = labelLength;
+        child[node] = NONE;
+        sibling[node] = NONE;
+        ends[node] = 0;
+        minRest[node] = INF;
+        parent[node] = NONE;
+        return node;
+    }
+
+    private int appendLabel(CharSequence moves, int from) {
+        int n = moves.length() - from;
+        if (labelCount + n > labels.length) labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelCount + n));
+        int at = labelCount;
+        for (int i = 0; i < n; i++) {
+            labels[at + i] = (byte) code(moves.charAt(from + i));
+        }
+        labelCount += n;
+        return at;
+    }
+
+    private int findChild(int node, int symbol) {
+        for (int c = child[node]; c != NONE; c = sibling[c]) {
+            if (labels[start[c]] == symbol) return c;
+        }
+        return NONE;
+    }
+
+    // 收录一条解法，返回它是否是新的走法
+    boolean add(String moves) {
+        int n = moves.length();
+        int depth = 0;
+        int path = 0;
+        int node = 0;
+        push(path++, 0, 0);
+        while (depth < n) {
+            int c = findChild(node, code(moves.charAt(depth)));
+            if (c == NONE) {
+                int leaf = newNode(appendLabel(moves, depth), n - depth);
+                sibling[leaf] = child[node];
+                child[node] = leaf;
+                parent[leaf] = node;
+                node = leaf;
+                depth = n;
+                push(path++, leaf, depth);
+                break;
+            }
+            int k = 1;
+            while (k < length[c] && depth + k < n && labels[start[c] + k] == code(moves.charAt(depth + k))) {
+                k++;
+            }
+            if (k < length[c]) {
+                // 在边的第 k 步处分叉：插入中间节点，原节点挂在它下面
+                int mid = newNode(start[c], k);
+                replaceChild(node, c, mid);
+                start[c] += k;
+                length[c] -= k;
+                child[mid] = c;
+                parent[mid] = node;
+                parent[c] = mid;
+                minRest[mid] = minRest[c] == INF ? INF : minRest[c] + length[c];
+                c = mid;
+            }
+            node = c;
+            depth += k;
+            push(path++, node, depth);
+        }
+        boolean added = ends[node]++ == 0;
+        for (int i = 0; i < path; i++) {
+            minRest[pathNodes[i]] = Math.min(minRest[pathNodes[i]], n - pathDepths[i]);
+        }
+
+        solutions++;
+        if (fewestMoves == null || n < fewestMoves.length()) fewestMoves = moves;
+        int pushes = pushes(moves);
+        if (pushes < fewestPushesCount || (pushes == fewestPushesCount && n < fewestPushes.length())) {
+            fewestPushes = moves;
+            fewestPushesCount = pushes;
+        }
+        return added;
+    }
+
+    static int pushes(String moves) {
+        int pushes = 0;
+        for (int i = 0; i < moves.length(); i++) {
+            if (Character.isUpperCase(moves.charAt(i))) pushes++;
+        }
+        return pushes;
+    }
+
+    private void push(int i, int node, int depth) {
+        if (i == pathNodes.length) {
+            pathNodes = Arrays.copyOf(pathNodes, i * 2);
+            pathDepths = Arrays.copyOf(pathDepths, i * 2);
+        }
+        pathNodes[i] = node;
+        pathDepths[i] = depth;
+    }
+
+    private void replaceChild(int parent, int old, int replacement) {
+        sibling[replacement] = sibling[old];
+        sibling[old] = NONE;
+        if (child[parent] == old) {
+            child[parent] = replacement;
+            return;
+        }
+        for (int c = child[parent]; c != NONE; c = sibling[c]) {
+            if (sibling[c] == old) {
+                sibling[c] = replacement;
+                return;
+            }
+        }
+    }
+
+    // prefix 是否是某条已知解法的前缀（包括完整解法本身）
+    boolean matches(CharSequence prefix) {
+        return cursor(prefix).onTrack();
+    }
+
+    // prefix 之后最短的已知后续走法；prefix 不在任何已知解法上时返回 null，已经是完整解法时返回空串
+    String continuation(CharSequence prefix) {
+        return cursor(prefix).continuation();
+    }
+
+    // 从头走过 prefix 之后的位置
+    Cursor cursor(CharSequence prefix) {
+        Cursor cursor = cursor();
+        for (int i = 0; i < prefix.length(); i++) {
+            cursor.advance(code(prefix.charAt(i)));
+        }
+        return cursor;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    // 对局在树上的位置：节点 node 的边上已走了 offset 步；偏离所有已知解法后只计偏离了几步，撤销回来时接着用
+    final class Cursor {
+        private int node;
+        private int offset;
+        private int off;
+
+        private Cursor() {
+        }
+
+        // move 为方向（0~3），推箱子再加 4，与 GameState.lastMove 相同
+        void advance(int move) {
+            if (off == 0) {
+                if (offset < length[node]) {
+                    if (labels[start[node] + offset] == move) {
+                        offset++;
+                        return;
+                    }
+                } else {
+                    int c = findChild(node, move);
+                    if (c != NONE) {
+                        node = c;
+                        offset = 1;
+                        return;
+                    }
+                }
+            }
+            off++;
+        }
+
+        // 撤销上一步
+        void back() {
+            if (off > 0) {
+                off--;
+            } else if (offset > 1) {
+                offset--;
+            } else if (node != 0) {
+                node = parent[node];
+                offset = length[node];
+            }
+        }
+
+        boolean onTrack() {
+            return off == 0;
+        }
+
+        // 从当前位置出发最短的已知后续走法，不在已知解法上时返回 null
+        String continuation() {
+            if (off > 0 || minRest[node] == INF) return null;
+            int at = node;
+            StringBuilder sb = new StringBuilder();
+            for (int i = offset; i < length[at]; i++) {
+                sb.append(move(labels[start[at] + i]));
+            }
+            while (minRest[at] > 0) {
+                int next = NONE;
+                for (int c = child[at]; c != NONE; c = sibling[c]) {
+                    if (minRest[c] != INF && length[c] + minRest[c] == minRest[at]) {
+                        next = c;
+                        break;
+                    }
+                }
+                at = next;
+                for (int i = 0; i < length[at]; i++) {
+                    sb.append(move(labels[start[at] + i]));
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    static SolutionLibrary read(File file) throws IOException {
+        SolutionLibrary lib = new SolutionLibrary();
+        if (!file.isFile()) return lib;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("不是解法库文件: " + file);
+            int nodes = in.readInt();
+            lib.labelCount = in.readInt();
+            lib.labels = new byte[Math.max(16, lib.labelCount)];
+            in.readFully(lib.labels, 0, lib.labelCount);
+            lib.nodeCount = nodes;
+            lib.start = readInts(in, nodes);
+            lib.length = readInts(in, nodes);
+            lib.child = readInts(in, nodes);
+            lib.sibling = readInts(in, nodes);
+            lib.ends = readInts(in, nodes);
+            lib.minRest = readInts(in, nodes);
+            lib.parent = new int[lib.minRest.length];
+            lib.parent[0] = NONE;
+            for (int node = 0; node < nodes; node++) {
+                for (int c = lib.child[node]; c != NONE; c = lib.sibling[c]) {
+                    lib.parent[c] = node;
+                }
+            }
+            lib.solutions = in.readInt();
+            lib.fewestPushesCount = in.readInt();
+            if (in.readBoolean()) lib.fewestMoves = in.readUTF();
+            if (in.readBoolean()) lib.fewestPushes = in.readUTF();
+        }
+        return lib;
+    }
+
+    private static int[] readInts(DataInputStream in, int n) throws IOException {
+        int[] values = new int[Math.max(16, n)];
+        for (int i = 0; i < n; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    void write(File file) throws IOException {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodeCount);
+            out.writeInt(labelCount);
+            out.write(labels, 0, labelCount);
+            for (int[] column : new int[][] {start, length, child, sibling, ends, minRest}) {
+                for (int i = 0; i < nodeCount; i++) {
+                    out.writeInt(column[i]);
+                }
+            }
+            out.writeInt(solutions);
+            out.writeInt(fewestPushesCount);
+            out.writeBoolean(fewestMoves != null);
+            if (fewestMoves != null) out.writeUTF(fewestMoves);
+            out.writeBoolean(fewestPushes != null);
+            if (fewestPushes != null) out.writeUTF(fewestPushes);
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,160 @@
+package tom.jiafei;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// 观战用的移动环形缓冲区：每个用户一个内存映射文件（spectate/<用户名十六进制>.ring）
+// 只有正在游戏的进程写入（单生产者），任意多个观战进程只读地跟随；发布一个事件只是两次内存写入，不加锁、不做系统调用，
+// 观战方读得慢时只会被生产者套圈，然后从最近一次换关处重新同步，绝不会拖慢玩家
+// 布局：文件头，写序号和最近换关序号各占一个缓存行，之后是 CAPACITY 个 8 字节事件（高 8 位类型，低位参数）
+final class SpectatorFeed implements Closeable {
+    private static final int MAGIC = 0x534B5350; // "SKSP"
+    private static final int VERSION = 1;
+    static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_VERSION = 4;
+    // 生产者每次打开时换一个新值；0 表示正在初始化
+    private static final int OFF_EPOCH = 8;
+    private static final int OFF_WRITE_SEQ = 64;
+    private static final int OFF_LEVEL_SEQ = 128;
+    private static final int OFF_ENTRIES = 192;
+    private static final int SIZE = OFF_ENTRIES + CAPACITY * 8;
+
+    static final int LEVEL = 1;
+    static final int MOVE = 2;
+    static final int UNDO = 3;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // 观战方收到的事件，调用方线程上依次回调
+    interface Listener {
+        void level(int level);
+
+        void move(int direction);
+
+        void undo();
+
+        // 落后太多、换关事件已被覆盖，要等到下一次换关才能继续
+        void lost();
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // 生产者：下一个事件的序号；观战方：下一个要读的序号
+    private long seq;
+    private long epoch;
+    private boolean synced;
+
+    private SpectatorFeed(FileChannel channel, FileChannel.MapMode mode) throws IOException {
+        this.channel = channel;
+        this.buffer = channel.map(mode, 0, SIZE);
+    }
+
+    private static File file(String user) {
+        File dir = new File("spectate");
+        dir.mkdirs();
+        return new File(dir, MoveJournal.fileName(user) + ".ring");
+    }
+
+    // 正在游戏的一方：清空缓冲区并换一个新的 epoch，已在观战的进程会重新同步
+    static SpectatorFeed publish(String user) throws IOException {
+        SpectatorFeed feed = new SpectatorFeed(FileChannel.open(file(user).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE),
+                FileChannel.MapMode.READ_WRITE);
+        LONGS.setRelease(feed.buffer, OFF_EPOCH, 0L);
+        feed.buffer.putInt(OFF_MAGIC, MAGIC);
+        feed.buffer.putInt(OFF_VERSION, VERSION);
+        LONGS.setRelease(feed.buffer, OFF_LEVEL_SEQ, -1L);
+        LONGS.setRelease(feed.buffer, OFF_WRITE_SEQ, 0L);
+        LONGS.setRelease(feed.buffer, OFF_EPOCH, System.currentTimeMillis() << 16 | (System.nanoTime() & 0xFFFF));
+        return feed;
+    }
+
+    // 观战一方，文件还不存在时返回 null
+    static SpectatorFeed watch(String user) throws IOException {
+        File file = file(user);
+        if (!file.isFile() || file.length() < SIZE) return null;
+        return new SpectatorFeed(FileChannel.open(file.toPath(), StandardOpenOption.READ), FileChannel.MapMode.READ_ONLY);
+    }
+
+    void level(int level) {
+        publish(LEVEL, level);
+    }
+
+    void move(int direction) {
+        publish(MOVE, direction);
+    }
+
+    void undo() {
+        publish(UNDO, 0);
+    }
+
+    private void publish(int type, int arg) {
+        long s = seq++;
+        // 事件本身也用 release 写，观战方读到新事件时一定能看到对应的写序号
+        LONGS.setRelease(buffer, OFF_ENTRIES + (int) (s & MASK) * 8, (long) type << 56 | (arg & 0xFFFFFFFFL));
+        if (type == LEVEL) LONGS.setRelease(buffer, OFF_LEVEL_SEQ, s);
+        LONGS.setRelease(buffer, OFF_WRITE_SEQ, s + 1);
+    }
+
+    // 读出所有新事件交给 listener，返回处理的事件数；生产者还没开始时返回 0
+    int poll(Listener listener) {
+        long current = (long) LONGS.getAcquire(buffer, OFF_EPOCH);
+        if (current == 0 || buffer.getInt(OFF_MAGIC) != MAGIC) return 0;
+        if (current != epoch) {
+            epoch = current;
+            resync(listener);
+        }
+        long write = (long) LONGS.getAcquire(buffer, OFF_WRITE_SEQ);
+        int handled = 0;
+        while (seq < write) {
+            long event = (long) LONGS.getAcquire(buffer, OFF_ENTRIES + (int) (seq & MASK) * 8);
+            // 读完再看一次写序号：生产者已经写到同一格的下一圈就说明这个事件可能被覆盖了
+            if ((long) LONGS.getAcquire(buffer, OFF_WRITE_SEQ) - seq >= CAPACITY
+                    || (long) LONGS.getAcquire(buffer, OFF_EPOCH) != epoch) {
+                resync(listener);
+                return handled;
+            }
+            seq++;
+            int type = (int) (event >>> 56);
+            int arg = (int) event;
+            if (type == LEVEL) {
+                synced = true;
+                listener.level(arg);
+            } else if (synced && type == MOVE) {
+                listener.move(arg);
+            } else if (synced && type == UNDO) {
+                listener.undo();
+            }
+            handled++;
+        }
+        return handled;
+    }
+
+    // 从最近一次换关处开始重放；换关事件已被覆盖时跳到最新处，等下一次换关
+    private void resync(Listener listener) {
+        long level = (long) LONGS.getAcquire(buffer, OFF_LEVEL_SEQ);
+        long write = (long) LONGS.getAcquire(buffer, OFF_WRITE_SEQ);
+        synced = false;
+        if (level >= 0 && write - level < CAPACITY) {
+            seq = level;
+        } else {
+            seq = write;
+            if (level >= 0) listener.lost();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,107 @@
+package tom.jiafei;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+
+// 观战窗口：跟随另一个进程（或本进程）中某个用户的 SpectatorFeed，在本地 GameState 上重放并绘制
+// 用 Swing 定时器轮询映射内存，没有新事件时什么都不做
+// 命令行：java -cp sokoban.jar tom.jiafei.SpectatorView <用户名>
+final class SpectatorView extends JFrame implements SpectatorFeed.Listener {
+    private static final int POLL_MILLIS = 20;
+
+    private final String user;
+    private final GameState state = new GameState();
+    private final JPanel board = new JPanel() {
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            if (state.map != null) renderer.render(g, state.map, getWidth(), getHeight());
+        }
+    };
+    private final JLabel status = new JLabel("等待玩家开始游戏…");
+    private final BoardRenderer renderer = new BoardRenderer(board::repaint);
+    private final Timer timer = new Timer(POLL_MILLIS, e -> poll());
+    private SpectatorFeed feed;
+    private int level = -1;
+    private int moves;
+
+    SpectatorView(String user) {
+        super("观战 - " + user);
+        this.user = user;
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+        board.setBackground(Color.WHITE);
+        add(board, BorderLayout.CENTER);
+        status.setBorder(BorderFactory.createEmptyBorder(6, 10, 6, 10));
+        add(status, BorderLayout.SOUTH);
+        setSize(800, 600);
+        setLocationRelativeTo(null);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timer.stop();
+                if (feed != null) {
+                    try {
+                        feed.close();
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            }
+        });
+        timer.start();
+    }
+
+    private void poll() {
+        if (feed == null) {
+            try {
+                feed = SpectatorFeed.watch(user);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (feed == null) return;
+        }
+        if (feed.poll(this) > 0) {
+            status.setText(level < 0 ? "等待玩家换关…"
+                    : "关卡: " + (level + 1) + "    步数: " + moves + "    剩余箱子: " + state.boxesLeft);
+            board.repaint();
+        }
+    }
+
+    @Override
+    public void level(int newLevel) {
+        int[][][] levels = SokobanGame.getLevels();
+        if (newLevel < 0 || newLevel >= levels.length) return;
+        level = newLevel;
+        moves = 0;
+        state.load(levels[newLevel]);
+    }
+
+    @Override
+    public void move(int direction) {
+        if (level >= 0 && state.tryMove(SokobanSolver.DX[direction], SokobanSolver.DY[direction]) != GameState.BLOCKED) {
+            moves++;
+        }
+    }
+
+    @Override
+    public void undo() {
+        if (level >= 0 && state.undo() != GameState.BLOCKED) moves--;
+    }
+
+    @Override
+    public void lost() {
+        level = -1;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("用法: SpectatorView <用户名>");
+            return;
+        }
+        SwingUtilities.invokeLater(() -> new SpectatorView(args[0]).setVisible(true));
+    }
+}
@@ -0,0 +1,74 @@
+package tom.jiafei;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+// 图块像素的磁盘缓存：直接保存 ARGB 像素，避免冷启动时初始化字体渲染和 ImageIO
+// 文件头含版本号与指纹（图块尺寸、颜色、图标），任何一项变化都会让旧缓存失效
+final class SpriteCache {
+    private static final int MAGIC = 0x534B5350; // "SKSP"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final int fingerprint;
+
+    SpriteCache(File file, int fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+    }
+
+    // 缓存缺失、版本或指纹不符时返回 null
+    Image[] load(int count, int size) {
+        if (!file.isFile() || file.length() != 20L + 4L * count * size * size) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != size
+                    || in.readInt() != fingerprint || in.readInt() != count) {
+                return null;
+            }
+            byte[] bytes = new byte[4 * size * size];
+            int[] pixels = new int[size * size];
+            Image[] images = new Image[count];
+            for (int i = 0; i < count; i++) {
+                in.readFully(bytes);
+                ByteBuffer.wrap(bytes).asIntBuffer().get(pixels);
+                BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                img.setRGB(0, 0, size, size, pixels, 0, size);
+                images[i] = img;
+            }
+            return images;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    void save(BufferedImage[] images, int size) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(fingerprint);
+            out.writeInt(images.length);
+            byte[] bytes = new byte[4 * size * size];
+            IntBuffer view = ByteBuffer.wrap(bytes).asIntBuffer();
+            for (BufferedImage img : images) {
+                view.clear();
+                view.put(img.getRGB(0, 0, size, size, null, 0, size));
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package tom.jiafei;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 启动各阶段耗时，游戏窗口首帧绘制完成后打印一次
+// 阶段（record）记各自的耗时；节点（mark）统一从 main 开始算，其中“first paint”就是冷启动到可操作棋盘的总时间
+final class StartupTimer {
+    private static final long JVM_MILLIS = ProcessHandle.current().info().startInstant()
+            .map(start -> Duration.between(start, Instant.now()).toMillis())
+            .orElse(-1L);
+    private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+    private static final Map<String, Long> MARKS = new LinkedHashMap<>();
+    private static long mainStart;
+    private static boolean reported;
+
+    private StartupTimer() {
+    }
+
+    // main 的第一行调用，传入 main 所在类最先初始化的时间戳
+    static synchronized void started(long mainStartNanos) {
+        mainStart = mainStartNanos;
+    }
+
+    static synchronized void record(String phase, long startNanos) {
+        if (!reported) PHASES.put(phase, System.nanoTime() - startNanos);
+    }
+
+    static synchronized void mark(String milestone) {
+        if (!reported) MARKS.put(milestone, System.nanoTime() - mainStart);
+    }
+
+    static synchronized void report() {
+        if (reported) return;
+        reported = true;
+        StringBuilder line = new StringBuilder("[startup] jvm->main ").append(JVM_MILLIS).append("ms");
+        for (Map.Entry<String, Long> phase : PHASES.entrySet()) {
+            line.append(" | ").append(phase.getKey()).append(' ')
+                    .append(phase.getValue() / 1_000_000).append("ms");
+        }
+        line.append(" || main->");
+        String separator = "";
+        for (Map.Entry<String, Long> mark : MARKS.entrySet()) {
+            line.append(separator).append(mark.getKey()).append(' ')
+                    .append(mark.getValue() / 1_000_000).append("ms");
+            separator = ", ";
+        }
+        System.out.println(line);
+    }
+}
@@ -0,0 +1,132 @@
+package tom.jiafei;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+// 多进程写入压力测试：N 个子进程同时注册用户、追加游戏记录并穿插读取，结束后检查数据完整性并报告吞吐量
+// 所有子进程都尝试注册同一批共享用户名，每个名字只能成功一次
+// 命令行：java -cp sokoban.jar tom.jiafei.StoreStress [空目录] [进程数] [每进程记录数]
+final class StoreStress {
+    private static final int SHARED_USERS = 20;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            child(new File(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        File dir = new File(args.length > 0 ? args[0] : "stress");
+        int processes = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int records = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        String[] existing = dir.list();
+        if (existing != null && existing.length > 0) {
+            System.err.println("目录不为空: " + dir);
+            return;
+        }
+        new File(dir, "ready").mkdirs();
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> children = new ArrayList<>();
+        for (int i = 0; i < processes; i++) {
+            children.add(new ProcessBuilder(java, "-Djava.awt.headless=true", "-Xshare:auto", "-XX:TieredStopAtLevel=1",
+                    "-cp", System.getProperty("java.class.path"), StoreStress.class.getName(),
+                    "--child", dir.getPath(), String.valueOf(i), String.valueOf(records))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start());
+        }
+        // 所有子进程都启动完毕再一起开始，避免测到的是 JVM 启动时间
+        while (new File(dir, "ready").list().length < processes) {
+            for (Process p : children) {
+                if (!p.isAlive() && p.exitValue() != 0) throw new IOException("子进程异常退出");
+            }
+            Thread.sleep(20);
+        }
+        new File(dir, "GO").createNewFile();
+
+        int sharedWins = 0;
+        long first = Long.MAX_VALUE;
+        long last = 0;
+        long readMaxMicros = 0;
+        for (Process p : children) {
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    if (!line.startsWith("RESULT ")) continue;
+                    String[] parts = line.split(" ");
+                    sharedWins += Integer.parseInt(parts[1]);
+                    first = Math.min(first, Long.parseLong(parts[2]));
+                    last = Math.max(last, Long.parseLong(parts[3]));
+                    readMaxMicros = Math.max(readMaxMicros, Long.parseLong(parts[4]));
+                }
+            }
+            p.waitFor();
+        }
+
+        // 检查：共享用户名各注册成功一次，用户文件没有重复和坏行，每条记录都在且没有交错
+        List<String> users = Files.readAllLines(new File(dir, "users.dat").toPath());
+        Set<String> names = new HashSet<>();
+        int badUsers = 0;
+        for (String line : users) {
+            int colon = line.indexOf(':');
+            if (colon <= 0 || line.length() - colon - 1 != 64 || !names.add(line.substring(0, colon))) badUsers++;
+        }
+        RecordStore store = new RecordStore(new File(dir, "records").getPath(), null);
+        RecordStats stats = RecordStats.scan(store, 1);
+        Map<String, BitSet> seen = new HashMap<>();
+        store.scanBackward(null, r -> {
+            seen.computeIfAbsent(r.user, k -> new BitSet()).set(r.moves);
+            return true;
+        });
+        int missing = 0;
+        for (int i = 0; i < processes; i++) {
+            BitSet moves = seen.getOrDefault("p" + i, new BitSet());
+            missing += records - moves.get(0, records).cardinality();
+        }
+
+        double seconds = (last - first) / 1000.0;
+        long writes = (long) processes * (records + SHARED_USERS + 1);
+        System.out.printf("%d 个进程：%d 次记录追加 + %d 次注册，耗时 %.2f s，写入吞吐 %.0f 次/秒，读取最长 %.1f ms%n",
+                processes, (long) processes * records, (long) processes * (SHARED_USERS + 1), seconds,
+                writes / Math.max(seconds, 1e-3), readMaxMicros / 1000.0);
+        System.out.printf("共享用户注册成功 %d 次（应为 %d），用户文件 %d 行、坏行或重复 %d，记录 %d 条、坏行 %d、缺失 %d%n",
+                sharedWins, SHARED_USERS, users.size(), badUsers, stats.lines, stats.malformed, missing);
+        boolean ok = sharedWins == SHARED_USERS && badUsers == 0 && users.size() == SHARED_USERS + processes
+                && stats.malformed == 0 && stats.lines == (long) processes * records && missing == 0;
+        System.out.println(ok ? "检查通过" : "检查失败");
+        if (!ok) System.exit(1);
+    }
+
+    private static void child(File dir, int id, int records) throws Exception {
+        UserStore users = new UserStore(new File(dir, "users.dat").getPath());
+        RecordStore store = new RecordStore(new File(dir, "records").getPath(), null);
+        String me = "p" + id;
+        new File(dir, "ready/" + id).createNewFile();
+        File go = new File(dir, "GO");
+        while (!go.exists()) {
+            Thread.sleep(2);
+        }
+
+        long start = System.currentTimeMillis();
+        int sharedWins = 0;
+        // 错开起点，让不同进程在同一时刻争抢不同的名字
+        for (int i = 0; i < SHARED_USERS; i++) {
+            if (users.register("shared" + (i + id) % SHARED_USERS, "0".repeat(64))) sharedWins++;
+        }
+        users.register(me, "1".repeat(64));
+        long readMax = 0;
+        for (int i = 0; i < records; i++) {
+            store.append(me, i % 3, i, start + i);
+            if (i % 10 == 0) {
+                long t = System.nanoTime();
+                users.check(me, "1".repeat(64));
+                store.newest(me, 0, 10);
+                readMax = Math.max(readMax, (System.nanoTime() - t) / 1000);
+            }
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("RESULT " + sharedWins + " " + start + " " + end + " " + readMax);
+    }
+}
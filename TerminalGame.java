@@ -0,0 +1,145 @@
+package tom.jiafei;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+// 终端版推箱子：没有图形界面（例如通过 SSH 登录）时使用，关卡与移动规则和图形版相同
+// 按键：WASD 或方向键移动，Z 撤销，R 重玩，N / P 下一关 / 上一关，Q 退出
+// 启动时用 stty 把终端切到逐键读取；切换失败时按回车后整行生效
+// 命令行：java -cp sokoban.jar tom.jiafei.TerminalGame [关卡序号，从 1 开始] [关卡包]
+final class TerminalGame {
+    private final LevelPack pack;
+    private final GameState state = new GameState();
+    private final TerminalRenderer renderer = new TerminalRenderer();
+    private final StringBuilder frame = new StringBuilder();
+    private final OutputStream out;
+    private int level;
+    private int moves;
+    private String message = "";
+
+    TerminalGame(LevelPack pack, OutputStream out) {
+        this.pack = pack;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int first = args.length > 0 ? Integer.parseInt(args[0]) - 1 : 0;
+        LevelPack pack = args.length > 1 ? LevelPack.read(Paths.get(args[1])) : LevelPack.builtIn();
+        String saved = stty("-g");
+        boolean raw = saved != null && stty("-icanon -echo min 1") != null;
+        PrintStream console = System.out;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (raw) stty(saved);
+            console.print("\033[?25h");
+            console.flush();
+        }));
+        console.print("\033[?25l");
+        new TerminalGame(pack, console).run(System.in, Math.max(0, Math.min(first, pack.size() - 1)));
+    }
+
+    void run(InputStream in, int startLevel) throws IOException {
+        start(startLevel);
+        int c;
+        while ((c = in.read()) >= 0) {
+            int dir = -1;
+            if (c == 27) {
+                // 方向键：ESC [ A/B/C/D
+                if (in.read() != '[') continue;
+                switch (in.read()) {
+                    case 'A': dir = 0; break;
+                    case 'D': dir = 1; break;
+                    case 'B': dir = 2; break;
+                    case 'C': dir = 3; break;
+                    default: continue;
+                }
+            }
+            switch (Character.toLowerCase(c)) {
+                case 'w': dir = 0; break;
+                case 'a': dir = 1; break;
+                case 's': dir = 2; break;
+                case 'd': dir = 3; break;
+                case 'z':
+                    if (state.undo() != GameState.BLOCKED) moves--;
+                    message = "";
+                    break;
+                case 'r':
+                    start(level);
+                    continue;
+                case 'n':
+                    if (level < pack.size() - 1) start(level + 1);
+                    continue;
+                case 'p':
+                    if (level > 0) start(level - 1);
+                    continue;
+                case 'q':
+                    renderer.park(frame);
+                    flush();
+                    return;
+                default:
+                    if (dir < 0) continue;
+            }
+            if (dir >= 0) move(dir);
+            draw();
+        }
+    }
+
+    private void start(int newLevel) throws IOException {
+        level = newLevel;
+        moves = 0;
+        state.load(pack.levels.get(level));
+        // 换关时地图大小可能不同，整屏重画
+        message = "";
+        renderer.clear(frame);
+        draw();
+    }
+
+    private void move(int dir) throws IOException {
+        if (state.tryMove(SokobanSolver.DX[dir], SokobanSolver.DY[dir]) == GameState.BLOCKED) return;
+        moves++;
+        message = "";
+        if (!state.isWon()) return;
+
+        String done = pack.names.get(level) + " 完成，用了 " + moves + " 步";
+        if (level < pack.size() - 1) {
+            start(level + 1);
+            message = done;
+        } else {
+            message = done + "，全部通关！按 Q 退出";
+        }
+    }
+
+    private void draw() throws IOException {
+        String status = String.format("%s (%d/%d)  步数 %d  剩余箱子 %d  %s",
+                pack.names.get(level), level + 1, pack.size(), moves, state.boxesLeft, message);
+        renderer.render(state.map, status, frame);
+        flush();
+    }
+
+    private void flush() throws IOException {
+        byte[] bytes = frame.toString().getBytes(StandardCharsets.UTF_8);
+        frame.setLength(0);
+        out.write(bytes);
+        out.flush();
+    }
+
+    // 在控制终端上执行 stty，返回其输出；没有终端或执行失败时返回 null
+    private static String stty(String args) {
+        try {
+            Process p = new ProcessBuilder("sh", "-c", "stty " + args + " < /dev/tty")
+                    .redirectErrorStream(true).start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            p.getInputStream().transferTo(output);
+            return p.waitFor() == 0 ? output.toString().trim() : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package tom.jiafei;
+
+import java.util.Arrays;
+
+import tom.jiafei.SokobanGame.TileType;
+
+// 用 ANSI 转义序列在终端中画地图，每格一个字符（常见的 XSB 记号）
+// 记住终端上当前显示的内容，每次只输出变化的格子：光标已经停在该格时直接写字符，否则先跳转
+// 一步移动通常只改动两三个格子，输出几十个字节，与地图大小无关
+final class TerminalRenderer {
+    private static final char[] SYMBOLS = new char[TileType.values().length];
+
+    static {
+        SYMBOLS[TileType.FLOOR.id] = ' ';
+        SYMBOLS[TileType.WALL.id] = '#';
+        SYMBOLS[TileType.PLAYER.id] = '@';
+        SYMBOLS[TileType.BOX.id] = '$';
+        SYMBOLS[TileType.TARGET.id] = '.';
+        SYMBOLS[TileType.BOX_ON_TARGET.id] = '*';
+        SYMBOLS[TileType.PLAYER_ON_TARGET.id] = '+';
+    }
+
+    // 终端上显示的图块，-1 表示未知（需要重画）
+    private int[][] shown = new int[0][];
+    private String shownStatus = "";
+    private int statusRow;
+    // 光标位置（从 1 开始），未知时为 0
+    private int cursorRow;
+    private int cursorCol;
+
+    static char symbol(int id) {
+        return id >= 0 && id < SYMBOLS.length ? SYMBOLS[id] : '?';
+    }
+
+    // 清屏，下一次 render 全部重画
+    void clear(StringBuilder out) {
+        out.append("\033[2J");
+        shown = new int[0][];
+        shownStatus = "";
+        cursorRow = 0;
+        cursorCol = 0;
+    }
+
+    // 把 map 与 status 行画到 out，只输出与上次不同的部分
+    void render(int[][] map, String status, StringBuilder out) {
+        if (shown.length != map.length) {
+            // 高度变了而调用方没有先清屏时，清掉旧地图多出的行
+            if (shown.length > 0) clear(out);
+            shown = new int[map.length][];
+        }
+        for (int y = 0; y < map.length; y++) {
+            if (shown[y] == null || shown[y].length != map[y].length) {
+                shown[y] = new int[map[y].length];
+                Arrays.fill(shown[y], -1);
+            }
+            for (int x = 0; x < map[y].length; x++) {
+                int id = map[y][x];
+                if (shown[y][x] == id) continue;
+                moveTo(y + 1, x + 1, out);
+                out.append(symbol(id));
+                cursorCol++;
+                shown[y][x] = id;
+            }
+        }
+        statusRow = map.length + 2;
+        if (!status.equals(shownStatus)) {
+            moveTo(statusRow, 1, out);
+            out.append(status).append("\033[K");
+            // 状态行含有中文等宽字符时列数无法确定
+            cursorRow = 0;
+            shownStatus = status;
+        }
+    }
+
+    // 光标停到状态行下方，退出时不覆盖画面
+    void park(StringBuilder out) {
+        moveTo(statusRow + 1, 1, out);
+    }
+
+    private void moveTo(int row, int col, StringBuilder out) {
+        if (row == cursorRow && col == cursorCol) return;
+        out.append("\033[").append(row).append(';').append(col).append('H');
+        cursorRow = row;
+        cursorCol = col;
+    }
+}
@@ -0,0 +1,135 @@
+package tom.jiafei;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+// 思考时间报告：读取 MoveTimer 写的 thinktime/think.log，按关卡列出思考时间最多的区域（卡关的地方），再按用户汇总
+// 分位数取所在桶的上界，与 LatencyHistogram 相同
+// 命令行：java -cp sokoban.jar tom.jiafei.ThinkTimeReport [think.log] [每关列出的区域数]
+final class ThinkTimeReport {
+    private static final class Summary {
+        long moves;
+        long millis;
+        long max;
+        final long[] histogram = new long[MoveTimer.BUCKETS];
+
+        void add(int moves, long millis, long max, String[] counts) {
+            this.moves += moves;
+            this.millis += millis;
+            this.max = Math.max(this.max, max);
+            for (int b = 0; b < counts.length && b < histogram.length; b++) {
+                histogram[b] += Long.parseLong(counts[b]);
+            }
+        }
+
+        long quantile(double p) {
+            long rank = (long) Math.ceil(p * moves);
+            long seen = 0;
+            for (int b = 0; b < histogram.length; b++) {
+                seen += histogram[b];
+                if (seen >= rank) return Math.min((1L << (b + 1)) - 1, max);
+            }
+            return max;
+        }
+    }
+
+    private static final class LevelSummary {
+        final Summary total = new Summary();
+        final Map<String, Summary> regions = new HashMap<>();
+        // 用户 + 时间戳区分每一局
+        final Set<String> plays = new HashSet<>();
+        final Set<String> solved = new HashSet<>();
+    }
+
+    private final Map<Integer, LevelSummary> levels = new TreeMap<>();
+    private final Map<String, Summary> users = new TreeMap<>();
+    private long malformed;
+
+    static ThinkTimeReport read(Path file) throws IOException {
+        ThinkTimeReport report = new ThinkTimeReport();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                report.add(line);
+            }
+        }
+        return report;
+    }
+
+    private void add(String line) {
+        String[] f = line.split("\\|");
+        if (f.length != 9) {
+            malformed++;
+            return;
+        }
+        try {
+            int level = Integer.parseInt(f[1]);
+            int moves = Integer.parseInt(f[5]);
+            long millis = Long.parseLong(f[6]);
+            long max = Long.parseLong(f[7]);
+            String[] counts = f[8].split(",");
+            LevelSummary ls = levels.computeIfAbsent(level, k -> new LevelSummary());
+            String play = f[0] + '|' + f[3];
+            ls.plays.add(play);
+            if (f[2].equals("1")) ls.solved.add(play);
+            ls.total.add(moves, millis, max, counts);
+            ls.regions.computeIfAbsent(f[4], k -> new Summary()).add(moves, millis, max, counts);
+            users.computeIfAbsent(f[0], k -> new Summary()).add(moves, millis, max, counts);
+        } catch (NumberFormatException e) {
+            malformed++;
+        }
+    }
+
+    String report(int topRegions) {
+        StringBuilder sb = new StringBuilder();
+        if (malformed > 0) sb.append(String.format("无效记录 %d 行%n", malformed));
+        for (Map.Entry<Integer, LevelSummary> e : levels.entrySet()) {
+            LevelSummary ls = e.getValue();
+            sb.append(String.format("第 %d 关：%d 局（过关 %d），%d 步，思考共 %.1f 秒，中位 %d ms，P90 %d ms%n",
+                    e.getKey() + 1, ls.plays.size(), ls.solved.size(), ls.total.moves, ls.total.millis / 1000.0,
+                    ls.total.quantile(0.5), ls.total.quantile(0.9)));
+            sb.append(String.format("  %-14s %6s %8s %8s %8s %6s%n", "区域（格子）", "步数", "中位ms", "P90ms", "最长ms", "占比"));
+            List<Map.Entry<String, Summary>> regions = new ArrayList<>(ls.regions.entrySet());
+            regions.sort((a, b) -> Long.compare(b.getValue().millis, a.getValue().millis));
+            for (Map.Entry<String, Summary> r : regions.subList(0, Math.min(topRegions, regions.size()))) {
+                Summary s = r.getValue();
+                sb.append(String.format("  %-16s %6d %8d %8d %8d %5.1f%%%n", cells(r.getKey()), s.moves,
+                        s.quantile(0.5), s.quantile(0.9), s.max,
+                        ls.total.millis == 0 ? 0.0 : 100.0 * s.millis / ls.total.millis));
+            }
+            sb.append('\n');
+        }
+
+        sb.append(String.format("%-12s %8s %10s %8s %8s%n", "用户", "步数", "思考秒数", "中位ms", "P90ms"));
+        for (Map.Entry<String, Summary> e : users.entrySet()) {
+            Summary s = e.getValue();
+            sb.append(String.format("%-14s %8d %10.1f %8d %8d%n",
+                    e.getKey(), s.moves, s.millis / 1000.0, s.quantile(0.5), s.quantile(0.9)));
+        }
+        return sb.toString();
+    }
+
+    // "列,行" 换成格子范围，例如 x 3-5 y 0-2
+    private static String cells(String region) {
+        int comma = region.indexOf(',');
+        int x = Integer.parseInt(region.substring(0, comma)) * MoveTimer.REGION;
+        int y = Integer.parseInt(region.substring(comma + 1)) * MoveTimer.REGION;
+        return String.format("x %d-%d y %d-%d", x, x + MoveTimer.REGION - 1, y, y + MoveTimer.REGION - 1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = args.length > 0 ? Paths.get(args[0]) : MoveTimer.LOG;
+        int top = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        try {
+            System.out.print(read(file).report(top));
+        } catch (NoSuchFileException e) {
+            System.err.println("找不到思考时间记录: " + file);
+        }
+    }
+}
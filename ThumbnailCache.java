@@ -0,0 +1,157 @@
+package tom.jiafei;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import tom.jiafei.SokobanGame.TileType;
+
+// 关卡缩略图：后台线程池绘制，内存中按字节预算做 LRU，同时以 PNG 存到 thumbnails/ 下，下次直接读盘
+// 以关卡内容的指纹为键，同样的布局只画一次，关卡改动后自然换成新图
+// 请求按后进先出处理（最近滚动到的可见格子先画）；执行前再问一次 stillWanted，已经滚出视野的请求直接丢弃
+final class ThumbnailCache {
+    static final int SIZE = 96;
+    static final long MEMORY_BYTES = Long.getLong("sokoban.thumbnails.cacheBytes", 32L << 20);
+
+    private final File dir;
+    private final long budget;
+    // 以下由 this 保护
+    private final LinkedHashMap<String, BufferedImage> images = new LinkedHashMap<>(64, 0.75f, true);
+    private final Set<String> pending = new HashSet<>();
+    private long bytes;
+
+    private final ExecutorService workers;
+
+    ThumbnailCache(File dir, long budget, int threads) {
+        this.dir = dir;
+        this.budget = budget;
+        int n = Math.max(1, threads);
+        workers = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<Runnable>() {
+            @Override
+            public boolean offer(Runnable task) {
+                return offerFirst(task);
+            }
+        }, r -> {
+            Thread t = new Thread(r, "sokoban-thumbnail");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    static String key(int[][] level) {
+        long h = 1125899906842597L;
+        for (int[] row : level) {
+            h = 31 * h + row.length;
+            for (int id : row) {
+                h = 31 * h + id;
+            }
+        }
+        return Long.toHexString(h) + "-" + level.length;
+    }
+
+    // 已缓存时直接返回；否则安排后台绘制并返回 null，画好后在 EDT 上调用 onReady
+    synchronized BufferedImage get(int[][] level, BooleanSupplier stillWanted, Runnable onReady) {
+        String key = key(level);
+        BufferedImage image = images.get(key);
+        if (image != null || !pending.add(key)) return image;
+        workers.execute(() -> {
+            try {
+                if (!stillWanted.getAsBoolean()) return;
+                BufferedImage loaded = load(key, level);
+                put(key, loaded);
+                SwingUtilities.invokeLater(onReady);
+            } finally {
+                synchronized (this) {
+                    pending.remove(key);
+                }
+            }
+        });
+        return null;
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized int size() {
+        return images.size();
+    }
+
+    private synchronized void put(String key, BufferedImage image) {
+        BufferedImage old = images.put(key, image);
+        if (old != null) bytes -= cost(old);
+        bytes += cost(image);
+        Iterator<BufferedImage> eldest = images.values().iterator();
+        while (bytes > budget && images.size() > 1) {
+            bytes -= cost(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static long cost(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    // 先读磁盘，没有或读不了再画，画好后写盘
+    private BufferedImage load(String key, int[][] level) {
+        File file = new File(dir, key + ".png");
+        if (file.isFile()) {
+            try {
+                BufferedImage image = ImageIO.read(file);
+                if (image != null) return image;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        BufferedImage image = render(level);
+        try {
+            dir.mkdirs();
+            File tmp = new File(dir, key + ".png.tmp");
+            ImageIO.write(image, "png", tmp);
+            if (!tmp.renameTo(file)) tmp.delete();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return image;
+    }
+
+    // 每格一个色块，按比例缩放进 SIZE × SIZE 以内
+    static BufferedImage render(int[][] level) {
+        int width = 1;
+        for (int[] row : level) {
+            width = Math.max(width, row.length);
+        }
+        int height = Math.max(1, level.length);
+        int cell = Math.max(1, SIZE / Math.max(width, height));
+        BufferedImage image = new BufferedImage(width * cell, height * cell, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(TileType.WALL.color);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        for (int y = 0; y < level.length; y++) {
+            for (int x = 0; x < level[y].length; x++) {
+                g.setColor(TileType.fromId(level[y][x]).color);
+                g.fillRect(x * cell, y * cell, cell, cell);
+            }
+        }
+        g.dispose();
+        return image;
+    }
+
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
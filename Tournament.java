@@ -0,0 +1,333 @@
+package tom.jiafei;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+// 机器人锦标赛：每个机器人在每一关上各下 rounds 局，在固定大小的线程池中并发执行
+// 每局有时间预算和内存预算（按本线程分配的字节数计），超出后 stop 变为 true；不理会 stop 的机器人在宽限期后被中断
+// 走法在 GameState 上重放验证，通关的局以 bot:<名字> 为用户名写入记录目录，格式与 records 相同，历史和统计工具可直接读取
+// 命令行：java -cp sokoban.jar tom.jiafei.Tournament [机器人列表，逗号分隔] [局数] [线程数] [每局毫秒] [每局内存 MB] [关卡包]
+// 机器人可以是内置的 solver、random，或实现了 BotAgent 的类名
+final class Tournament {
+    static final String RECORD_DIR = "tournament";
+
+    enum Outcome { SOLVED, FAILED, INVALID, TIMEOUT, OVER_MEMORY, ERROR }
+
+    static final class Game {
+        final String agent;
+        final int level;
+        final Outcome outcome;
+        final int moves;
+        final int pushes;
+        final long nanos;
+
+        Game(String agent, int level, Outcome outcome, int moves, int pushes, long nanos) {
+            this.agent = agent;
+            this.level = level;
+            this.outcome = outcome;
+            this.moves = moves;
+            this.pushes = pushes;
+            this.nanos = nanos;
+        }
+    }
+
+    // 一个机器人的汇总，排名依次比较：通关局数多、通关总步数少、总推动少、总耗时少
+    static final class Standing {
+        final String agent;
+        int games;
+        int solved;
+        final int[] outcomes = new int[Outcome.values().length];
+        long moves;
+        long pushes;
+        long nanos;
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        Standing(String agent) {
+            this.agent = agent;
+        }
+
+        void add(Game game) {
+            games++;
+            outcomes[game.outcome.ordinal()]++;
+            nanos += game.nanos;
+            latency.record(game.nanos);
+            if (game.outcome == Outcome.SOLVED) {
+                solved++;
+                moves += game.moves;
+                pushes += game.pushes;
+            }
+        }
+    }
+
+    static final Comparator<Standing> RANKING = Comparator.<Standing>comparingInt(s -> -s.solved)
+            .thenComparingLong(s -> s.moves)
+            .thenComparingLong(s -> s.pushes)
+            .thenComparingLong(s -> s.nanos);
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final LevelPack pack;
+    private final long timeNanos;
+    private final long allocBytes;
+    private final RecordStore records;
+
+    Tournament(LevelPack pack, long timeMillis, long allocMegabytes, RecordStore records) {
+        this.pack = pack;
+        this.timeNanos = TimeUnit.MILLISECONDS.toNanos(timeMillis);
+        this.allocBytes = allocMegabytes << 20;
+        this.records = records;
+    }
+
+    static Supplier<BotAgent> agent(String name) throws ReflectiveOperationException {
+        switch (name) {
+            case "solver":
+                return SolverBot::new;
+            case "random":
+                return RandomBot::new;
+            default:
+                Class<? extends BotAgent> type = Class.forName(name).asSubclass(BotAgent.class);
+                type.getDeclaredConstructor();
+                return () -> {
+                    try {
+                        return type.getDeclaredConstructor().newInstance();
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                };
+        }
+    }
+
+    List<Game> run(List<Supplier<BotAgent>> agents, int rounds, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "sokoban-tournament");
+            t.setDaemon(true);
+            return t;
+        });
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sokoban-tournament-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Game>> futures = new ArrayList<>();
+            for (int round = 0; round < rounds; round++) {
+                for (int level = 0; level < pack.size(); level++) {
+                    for (Supplier<BotAgent> agent : agents) {
+                        int index = level;
+                        futures.add(pool.submit(() -> play(agent.get(), index, watchdog)));
+                    }
+                }
+            }
+            List<Game> games = new ArrayList<>();
+            for (Future<Game> future : futures) {
+                games.add(future.get());
+            }
+            return games;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("锦标赛被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("锦标赛失败", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    // 下棋线程与看门狗的交接：谁先把 RUNNING 改掉谁说了算
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int KILLING = 2;
+    private static final int KILLED = 3;
+
+    private Game play(BotAgent agent, int level, ScheduledExecutorService watchdog) {
+        int[][] map = SokobanSolver.copyOf(pack.levels.get(level));
+        Thread worker = Thread.currentThread();
+        long start = System.nanoTime();
+        long deadline = start + timeNanos;
+        long allocStart = THREADS.getCurrentThreadAllocatedBytes();
+        AtomicReference<Outcome> overrun = new AtomicReference<>();
+        // 分配字节数按调用线程统计，机器人应在下棋的线程上调用
+        BooleanSupplier stop = () -> {
+            if (overrun.get() == null) {
+                if (System.nanoTime() > deadline) {
+                    overrun.compareAndSet(null, Outcome.TIMEOUT);
+                } else if (THREADS.getCurrentThreadAllocatedBytes() - allocStart > allocBytes) {
+                    overrun.compareAndSet(null, Outcome.OVER_MEMORY);
+                }
+            }
+            return overrun.get() != null || worker.isInterrupted();
+        };
+        // 宽限期后仍未返回就中断；下棋线程已经返回（DONE）时什么也不做
+        AtomicInteger phase = new AtomicInteger(RUNNING);
+        ScheduledFuture<?> kill = watchdog.schedule(() -> {
+            if (!phase.compareAndSet(RUNNING, KILLING)) return;
+            overrun.compareAndSet(null, Outcome.TIMEOUT);
+            worker.interrupt();
+            phase.set(KILLED);
+        }, timeNanos + timeNanos / 2 + TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.NANOSECONDS);
+
+        String moves;
+        Outcome failure = null;
+        try {
+            moves = agent.play(map, stop);
+        } catch (RuntimeException | OutOfMemoryError | StackOverflowError e) {
+            moves = null;
+            failure = Outcome.ERROR;
+        } finally {
+            kill.cancel(false);
+            // 看门狗抢先一步时，等它发出中断后再清掉中断标志，免得带到同一线程上的下一局
+            if (!phase.compareAndSet(RUNNING, DONE)) {
+                while (phase.get() != KILLED) {
+                    Thread.onSpinWait();
+                }
+            }
+            Thread.interrupted();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocStart;
+        if (failure == null) failure = overrun.get();
+        // 不理会 stop、在看门狗动手前自己返回的机器人，超出预算同样判负
+        if (failure == null && nanos > timeNanos) failure = Outcome.TIMEOUT;
+        if (failure == null && allocated > allocBytes) failure = Outcome.OVER_MEMORY;
+        if (failure != null) return new Game(agent.name(), level, failure, 0, 0, nanos);
+        return replay(agent.name(), level, moves, nanos);
+    }
+
+    // 在 GameState 上重放走法，大小写（推/走）须与实际相符
+    private Game replay(String name, int level, String moves, long nanos) {
+        if (moves == null) return new Game(name, level, Outcome.FAILED, 0, 0, nanos);
+        GameState state = new GameState();
+        state.load(pack.levels.get(level));
+        int count = 0;
+        for (int i = 0; i < moves.length() && !state.isWon(); i++) {
+            char move = moves.charAt(i);
+            int dir = SokobanSolver.directionOf(move);
+            int result = dir < 0 ? GameState.BLOCKED : state.tryMove(SokobanSolver.DX[dir], SokobanSolver.DY[dir]);
+            if (result == GameState.BLOCKED || (result == GameState.PUSHED) != Character.isUpperCase(move)) {
+                return new Game(name, level, Outcome.INVALID, count, state.pushes, nanos);
+            }
+            count++;
+        }
+        if (!state.isWon()) return new Game(name, level, Outcome.FAILED, count, state.pushes, nanos);
+        if (records != null) {
+            try {
+                records.append("bot:" + name, level, count, System.currentTimeMillis());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return new Game(name, level, Outcome.SOLVED, count, state.pushes, nanos);
+    }
+
+    static List<Standing> standings(List<Game> games) {
+        Map<String, Standing> byAgent = new LinkedHashMap<>();
+        for (Game game : games) {
+            byAgent.computeIfAbsent(game.agent, Standing::new).add(game);
+        }
+        List<Standing> standings = new ArrayList<>(byAgent.values());
+        standings.sort(RANKING);
+        return standings;
+    }
+
+    static String format(List<Standing> standings, long wallNanos, int threads) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-4s %-24s %6s %6s %10s %10s %10s %10s %10s  %s%n",
+                "名次", "机器人", "局数", "通关", "通关步数", "推动", "p50(ms)", "p99(ms)", "最长(ms)", "结果分布"));
+        int games = 0;
+        for (int i = 0; i < standings.size(); i++) {
+            Standing s = standings.get(i);
+            games += s.games;
+            StringBuilder outcomes = new StringBuilder();
+            for (Outcome o : Outcome.values()) {
+                if (s.outcomes[o.ordinal()] > 0) outcomes.append(o).append('=').append(s.outcomes[o.ordinal()]).append(' ');
+            }
+            sb.append(String.format("%-6d %-24s %6d %6d %12d %10d %10.2f %10.2f %10.2f  %s%n",
+                    i + 1, s.agent, s.games, s.solved, s.moves, s.pushes,
+                    s.latency.percentileNanos(0.50) / 1e6, s.latency.percentileNanos(0.99) / 1e6,
+                    s.latency.getMaxMicros() / 1e3, outcomes.toString().trim()));
+        }
+        sb.append(String.format("%n共 %d 局，%d 个线程，总耗时 %.1f ms，%.1f 局/秒%n",
+                games, threads, wallNanos / 1e6, games / (wallNanos / 1e9)));
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] names = (args.length > 0 ? args[0] : "solver,random").split(",");
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long timeMillis = args.length > 3 ? Long.parseLong(args[3]) : 2000;
+        long allocMegabytes = args.length > 4 ? Long.parseLong(args[4]) : 512;
+        LevelPack pack = args.length > 5 ? LevelPack.read(Paths.get(args[5])) : LevelPack.builtIn();
+
+        List<Supplier<BotAgent>> agents = new ArrayList<>();
+        for (String name : names) {
+            agents.add(agent(name.trim()));
+        }
+        RecordStore records = new RecordStore(RECORD_DIR, null);
+        Tournament tournament = new Tournament(pack, timeMillis, allocMegabytes, records);
+        long start = System.nanoTime();
+        List<Game> games = tournament.run(agents, rounds, threads);
+        System.out.print(format(standings(games), System.nanoTime() - start, threads));
+        System.out.println("通关记录已写入 " + RECORD_DIR + "/，可用 RecordStats " + RECORD_DIR + " 查看");
+    }
+
+    // 内置：以推动为单位的 A* 求解，节点预算内找不到就放弃
+    static final class SolverBot implements BotAgent {
+        @Override
+        public String name() {
+            return "solver";
+        }
+
+        @Override
+        public String play(int[][] level, BooleanSupplier stop) {
+            SokobanSolver.Result result = new SokobanSolver(level).solve(level, LevelValidator.DEFAULT_BUDGET, stop);
+            return result.status == SokobanSolver.Status.SOLVED ? result.moves : null;
+        }
+    }
+
+    // 内置：随机走动，作为排名的基线
+    static final class RandomBot implements BotAgent {
+        private static final int MAX_MOVES = 20_000;
+        private final Random random = new Random();
+
+        @Override
+        public String name() {
+            return "random";
+        }
+
+        @Override
+        public String play(int[][] level, BooleanSupplier stop) {
+            GameState state = new GameState();
+            state.load(level);
+            StringBuilder moves = new StringBuilder();
+            while (!state.isWon() && moves.length() < MAX_MOVES && !stop.getAsBoolean()) {
+                int dir = random.nextInt(4);
+                int result = state.tryMove(SokobanSolver.DX[dir], SokobanSolver.DY[dir]);
+                if (result == GameState.BLOCKED) continue;
+                char move = SokobanSolver.MOVES[dir];
+                moves.append(result == GameState.PUSHED ? Character.toUpperCase(move) : move);
+            }
+            return moves.toString();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package tom.jiafei;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+// 用户文件（每行 用户名:密码哈希）的读写，可被多个游戏进程同时使用
+// 内存里保留用户名 → 哈希的索引和已读到的位置，每次只读其他进程新追加的尾部
+// 注册在跨进程写锁内完成“检查 + 追加”，登录不加文件锁
+final class UserStore {
+    private static final GameMetrics METRICS = GameMetrics.get();
+
+    private final File file;
+    private JournaledWriter writer;
+    // 以下由 users 保护
+    private final Map<String, String> users = new HashMap<>();
+    private long offset;
+
+    UserStore(String path) {
+        this.file = new File(path);
+    }
+
+    boolean check(String user, String passwordHash) {
+        long start = System.nanoTime();
+        GameEvents.FileOperation event = new GameEvents.FileOperation();
+        event.begin();
+        long read = 0;
+        try {
+            synchronized (users) {
+                read = refresh();
+                return passwordHash.equals(users.get(user));
+            }
+        } catch (IOException e) {
+            return false;
+        } finally {
+            METRICS.usersRead.record(System.nanoTime() - start);
+            METRICS.usersBytesRead.add(read);
+            METRICS.usersFileSize = file.length();
+            GameEvents.fileOperation(event, file.getPath(), "read", read);
+        }
+    }
+
+    // 用户名已存在时返回 false
+    boolean register(String user, String passwordHash) {
+        long start = System.nanoTime();
+        GameEvents.FileOperation event = new GameEvents.FileOperation();
+        event.begin();
+        byte[] line = (user + ":" + passwordHash + "\n").getBytes();
+        boolean added;
+        try {
+            added = writer().write(() -> {
+                synchronized (users) {
+                    refresh();
+                    if (users.containsKey(user)) return false;
+                }
+                writer.append(file, line);
+                return true;
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            METRICS.usersWrite.record(System.nanoTime() - start);
+        }
+        if (added) {
+            METRICS.usersBytesWritten.add(line.length);
+            METRICS.usersFileSize = file.length();
+            GameEvents.fileOperation(event, file.getPath(), "write", line.length);
+        }
+        return added;
+    }
+
+    private synchronized JournaledWriter writer() throws IOException {
+        if (writer == null) {
+            writer = new JournaledWriter(new File(file.getPath() + ".lock"), new File(file.getPath() + ".journal"));
+        }
+        return writer;
+    }
+
+    // 读入上次位置之后的完整行，返回读取的字节数；没有换行的半行留到下次
+    private long refresh() throws IOException {
+        if (!file.exists()) return 0;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            if (length <= offset) return 0;
+            byte[] tail = new byte[(int) (length - offset)];
+            in.seek(offset);
+            in.readFully(tail);
+            int lineStart = 0;
+            for (int i = 0; i < tail.length; i++) {
+                if (tail[i] != '\n') continue;
+                String entry = new String(tail, lineStart, i - lineStart).trim();
+                int colon = entry.indexOf(':');
+                if (colon > 0) {
+                    users.putIfAbsent(entry.substring(0, colon), entry.substring(colon + 1));
+                }
+                lineStart = i + 1;
+            }
+            offset += lineStart;
+            return tail.length;
+        }
+    }
+}
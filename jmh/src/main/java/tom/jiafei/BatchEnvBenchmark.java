@@ -0,0 +1,49 @@
+package tom.jiafei;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// BatchEnv.step 推进全部环境一步；按环境数折算即每秒环境步数
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BatchEnvBenchmark {
+    @Param({"256", "4096"})
+    public int envs;
+
+    @Param({"1"})
+    public int threads;
+
+    private BatchEnv env;
+    // 预先生成的随机动作，循环使用
+    private int[][] actions;
+    private int round;
+
+    @Setup
+    public void setup() {
+        env = new BatchEnv(SokobanGame.getLevels(), envs, 1000, threads);
+        Random random = new Random(42);
+        actions = new int[64][envs];
+        for (int[] row : actions) {
+            for (int e = 0; e < envs; e++) {
+                row[e] = random.nextInt(BatchEnv.ACTIONS);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        env.close();
+    }
+
+    @Benchmark
+    public float[] step() {
+        env.step(actions[round++ & 63]);
+        return env.rewards;
+    }
+}
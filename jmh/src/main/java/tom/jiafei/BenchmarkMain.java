@@ -0,0 +1,24 @@
+package tom.jiafei;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// benchmarks.jar 的入口：默认把结果以 JSON 写入 jmh-result.json，显式传入 -rf/-rff 时以参数为准
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add("-rf");
+            options.add("json");
+        }
+        if (!options.contains("-rff")) {
+            options.add("-rff");
+            options.add("jmh-result.json");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,25 @@
+package tom.jiafei;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// loadLevel 中与界面无关的部分：取关卡数据并复制、统计
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LevelLoadBenchmark {
+    @Param({"0", "1", "2"})
+    public int level;
+
+    private final GameState state = new GameState();
+
+    @Benchmark
+    public GameState loadLevel() {
+        state.load(SokobanGame.getLevels()[level]);
+        return state;
+    }
+}
@@ -0,0 +1,71 @@
+package tom.jiafei;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// tryMovePlayer / checkWin 的吞吐量：纯走动，以及带推箱（进出目标点）的循环
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MoveBenchmark {
+    // 推一下后绕到另一侧推回来，10 步回到同一局面
+    private static final int[][] PUSH_ROOM = {
+            {1, 1, 1, 1, 1, 1},
+            {1, 0, 0, 0, 0, 1},
+            {1, 2, 3, 4, 0, 1},
+            {1, 1, 1, 1, 1, 1}
+    };
+    private static final String PUSH_CYCLE = "urrdLulldR";
+    // GameState 为撤销记下每一步，一直走下去历史会无限增长；走到这么多步就重新载入，
+    // 保持在预分配的容量内，测的是走一步本身而不是历史数组的扩容（载入的开销摊到几千步上可以忽略）
+    private static final int RELOAD_STEPS = 4000;
+
+    private int[][] walkLevel;
+    private GameState walkState;
+    private int walkDx = 1;
+
+    private GameState pushState;
+    private int pushIndex;
+
+    @Setup
+    public void setup() {
+        walkLevel = SokobanGame.getLevels()[1];
+        walkState = new GameState();
+        walkState.load(walkLevel);
+
+        pushState = new GameState();
+        resetPush();
+    }
+
+    private void resetPush() {
+        pushState.load(PUSH_ROOM);
+        pushState.tryMove(1, 0);
+        pushIndex = 0;
+    }
+
+    @Benchmark
+    public boolean walk() {
+        if (walkState.tryMove(walkDx, 0) == GameState.BLOCKED) {
+            walkDx = -walkDx;
+        }
+        if (walkState.steps() >= RELOAD_STEPS) {
+            walkState.load(walkLevel);
+            walkDx = 1;
+        }
+        return walkState.isWon();
+    }
+
+    @Benchmark
+    public boolean push() {
+        int dir = SokobanSolver.directionOf(PUSH_CYCLE.charAt(pushIndex));
+        pushState.tryMove(SokobanSolver.DX[dir], SokobanSolver.DY[dir]);
+        pushIndex = (pushIndex + 1) % PUSH_CYCLE.length();
+        // 只在一圈结束、回到起始局面时重新载入
+        if (pushIndex == 0 && pushState.steps() >= RELOAD_STEPS) resetPush();
+        return pushState.isWon();
+    }
+}
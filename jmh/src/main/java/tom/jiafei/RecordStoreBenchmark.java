@@ -0,0 +1,64 @@
+package tom.jiafei;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// saveGameRecord / showHistory 针对不同大小的合成记录（100 个用户轮流写入），旧版文件导入并压缩完成后再测
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RecordStoreBenchmark {
+    private static final int USERS = 100;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int lines;
+
+    private File dir;
+    private RecordStore store;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("records").toFile();
+        File file = new File(dir, "records.dat");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            long timestamp = 1_700_000_000_000L;
+            for (int i = 0; i < lines; i++) {
+                writer.write("user" + (i % USERS) + "|" + (i % 3) + "|" + (20 + i % 200) + "|" + (timestamp + i));
+                writer.newLine();
+            }
+        }
+        store = new RecordStore(new File(dir, "segments").getPath(), file.getPath());
+        store.newest("user0", 0, 1);
+        store.awaitCompaction();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void saveGameRecord() throws IOException {
+        store.append("user7", 1, 42, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public List<GameRecord> showHistory() throws IOException {
+        return store.newest("user7", 0, HistoryTableModel.PAGE);
+    }
+}
@@ -0,0 +1,66 @@
+package tom.jiafei;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// renderGame 绘制到离屏图像，size 为正方形地图的边长
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+    @Param({"8", "20", "50", "100"})
+    public int size;
+
+    private BoardRenderer renderer;
+    private int[][] map;
+    private BufferedImage background;
+    private BufferedImage canvas;
+    private Graphics2D g;
+
+    @Setup
+    public void setup() {
+        renderer = new BoardRenderer();
+        map = syntheticMap(size);
+        background = BoardRenderer.renderBackground(map);
+        int pixels = size * SokobanGame.TILE_SIZE;
+        canvas = new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+        g = canvas.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        renderer.render(g, map, canvas.getWidth(), canvas.getHeight());
+        return canvas;
+    }
+
+    // 使用预先绘制的静态背景层，只补画箱子和玩家
+    @Benchmark
+    public BufferedImage renderLayered() {
+        renderer.render(g, map, background, canvas.getWidth(), canvas.getHeight());
+        return canvas;
+    }
+
+    // 四周是墙，内部按固定规律混入各类图块
+    static int[][] syntheticMap(int size) {
+        int[][] map = new int[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                boolean border = x == 0 || y == 0 || x == size - 1 || y == size - 1;
+                map[y][x] = border ? 1 : (x * 7 + y * 3) % 11 < 6 ? 0 : (x + y) % 6;
+            }
+        }
+        map[1][1] = 2;
+        return map;
+    }
+}
@@ -0,0 +1,25 @@
+package tom.jiafei;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import tom.jiafei.SokobanGame.TileType;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TileTypeBenchmark {
+    private final int[] ids = {0, 1, 2, 3, 4, 5, 6};
+
+    @Benchmark
+    public void fromId(Blackhole bh) {
+        for (int id : ids) {
+            bh.consume(TileType.fromId(id));
+        }
+    }
+}